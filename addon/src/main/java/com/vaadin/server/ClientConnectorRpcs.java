@@ -0,0 +1,17 @@
+package com.vaadin.server;
+
+import com.vaadin.shared.communication.ServerRpc;
+
+/**
+ * Utility class to register server RPC implementations to any connector using protected method
+ * {@link AbstractClientConnector#registerRpc(ServerRpc, Class)}
+ */
+public final class ClientConnectorRpcs {
+    private ClientConnectorRpcs() {
+    }
+
+    public static <T extends ServerRpc> void registerRpc(AbstractClientConnector component, T implementation,
+                                                         Class<T> rpcInterfaceType) {
+        component.registerRpc(implementation, rpcInterfaceType);
+    }
+}
@@ -22,6 +22,7 @@ import com.vaadin.server.PaintTarget;
 import com.vaadin.ui.AbsoluteLayout;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.LegacyComponent;
+import fi.jasoft.dragdroplayouts.client.ui.DragProxyMode;
 import fi.jasoft.dragdroplayouts.client.ui.LayoutDragMode;
 import fi.jasoft.dragdroplayouts.client.ui.absolutelayout.DDAbsoluteLayoutState;
 import fi.jasoft.dragdroplayouts.details.AbsoluteLayoutTargetDetails;
@@ -32,13 +33,19 @@ import java.util.Map;
 
 /**
  * Absolute layout with drag and drop support
+ * <p>
+ * The drag and drop state is recomputed when the layout is marked as dirty.
+ * Changes made through {@code getState(false).ddState} do not mark the
+ * layout as dirty and need a call to {@link #markAsDirty()} for the state
+ * to be recomputed.
  * 
  * @author John Ahlroos / www.jasoft.fi
  */
 @SuppressWarnings("serial")
 public class DDAbsoluteLayout extends AbsoluteLayout
         implements LayoutDragSource, DropTarget, ShimSupport, LegacyComponent,
-        DragImageReferenceSupport, DragFilterSupport, DragGrabFilterSupport, HasDragCaptionProvider {
+        DragImageReferenceSupport,
+        DragProxySupport, DragFilterSupport, DragGrabFilterSupport, HasDragCaptionProvider {
 
     // Drop handler which handles dd drop events
     private DropHandler dropHandler;
@@ -46,6 +53,10 @@ public class DDAbsoluteLayout extends AbsoluteLayout
     // A filter for dragging components.
     private DragFilter dragFilter = DragFilter.ALL;
 
+    // Tracks when the drag and drop state needs to be recomputed
+    private final DDLayoutStateTracker ddStateTracker = new DDLayoutStateTracker(
+            this);
+
     private DragGrabFilter dragGrabFilter;
 
     private DragImageProvider dragImageProvider;
@@ -75,14 +86,13 @@ public class DDAbsoluteLayout extends AbsoluteLayout
     public void paintContent(PaintTarget target) throws PaintException {
 
         // Paint the drop handler criterions
-        if (dropHandler != null && isEnabled()) {
-            dropHandler.getAcceptCriterion().paint(target);
-        }
+        ddStateTracker.paintAcceptCriterion(target, dropHandler);
     }
 
     @Override
     public void setDragCaptionProvider(DragCaptionProvider provider) {
         this.dragCaptionProvider = provider;
+        markAsDirty();
     }
 
     @Override
@@ -90,6 +100,17 @@ public class DDAbsoluteLayout extends AbsoluteLayout
         return dragCaptionProvider;
     }
 
+    @Override
+    public void setLazyDragCaptions(boolean lazy) {
+        getState().ddState.lazyDragCaptions = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragCaptions() {
+        return getState().ddState.lazyDragCaptions;
+    }
+
     /**
      * Get the drophandler which handles component drops on the layout
      */
@@ -154,6 +175,20 @@ public class DDAbsoluteLayout extends AbsoluteLayout
         return getState().ddState.iframeShims;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void setDragScopedShim(boolean dragScoped) {
+        DDUtil.setDragScopedShim(getState(), dragScoped);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isDragScopedShim() {
+        return DDUtil.isDragScopedShim(getState());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -166,6 +201,7 @@ public class DDAbsoluteLayout extends AbsoluteLayout
      */
     public void setDragFilter(DragFilter dragFilter) {
         this.dragFilter = dragFilter;
+        markAsDirty();
     }
 
     /**
@@ -193,7 +229,13 @@ public class DDAbsoluteLayout extends AbsoluteLayout
     @Override
     public void beforeClientResponse(boolean initial) {
         super.beforeClientResponse(initial);
-        DDUtil.onBeforeClientResponse(this, getState());
+        ddStateTracker.beforeClientResponse(getState(), initial);
+    }
+
+    @Override
+    public void markAsDirty() {
+        super.markAsDirty();
+        DDUtil.markDirty(ddStateTracker);
     }
 
     @Override
@@ -207,6 +249,47 @@ public class DDAbsoluteLayout extends AbsoluteLayout
         return this.dragImageProvider;
     }
 
+    @Override
+    public void setLazyDragImages(boolean lazy) {
+        getState().ddState.lazyDragImages = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragImages() {
+        return getState().ddState.lazyDragImages;
+    }
+
+    @Override
+    public void setDragProxyMode(DragProxyMode mode) {
+        DDUtil.setDragProxyMode(getState(), mode);
+    }
+
+    @Override
+    public DragProxyMode getDragProxyMode() {
+        return DDUtil.getDragProxyMode(getState());
+    }
+
+    @Override
+    public void setDragProxyNodeLimit(int limit) {
+        DDUtil.setDragProxyNodeLimit(getState(), limit);
+    }
+
+    @Override
+    public int getDragProxyNodeLimit() {
+        return DDUtil.getDragProxyNodeLimit(getState());
+    }
+
+    @Override
+    public void setTransformDragImage(boolean transform) {
+        DDUtil.setTransformDragImage(getState(), transform);
+    }
+
+    @Override
+    public boolean isTransformDragImage() {
+        return DDUtil.isTransformDragImage(getState());
+    }
+
     @Override
     public DragGrabFilter getDragGrabFilter() {
         return dragGrabFilter;
@@ -215,5 +298,6 @@ public class DDAbsoluteLayout extends AbsoluteLayout
     @Override
     public void setDragGrabFilter(DragGrabFilter dragGrabFilter) {
         this.dragGrabFilter = dragGrabFilter;
+        markAsDirty();
     }
 }
\ No newline at end of file
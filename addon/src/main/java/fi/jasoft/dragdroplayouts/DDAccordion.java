@@ -22,6 +22,7 @@ import com.vaadin.server.PaintTarget;
 import com.vaadin.ui.Accordion;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.LegacyComponent;
+import fi.jasoft.dragdroplayouts.client.ui.DragProxyMode;
 import fi.jasoft.dragdroplayouts.client.ui.LayoutDragMode;
 import fi.jasoft.dragdroplayouts.client.ui.accordion.DDAccordionState;
 import fi.jasoft.dragdroplayouts.details.AccordionTargetDetails;
@@ -33,6 +34,11 @@ import java.util.Map;
 
 /**
  * Accordion with drag and drop support
+ * <p>
+ * The drag and drop state is recomputed when the layout is marked as dirty.
+ * Changes made through {@code getState(false).ddState} do not mark the
+ * layout as dirty and need a call to {@link #markAsDirty()} for the state
+ * to be recomputed.
  * 
  * @author John Ahlroos / www.jasoft.fi
  * @since 0.4.0
@@ -40,7 +46,8 @@ import java.util.Map;
 @SuppressWarnings("serial")
 public class DDAccordion extends Accordion
         implements LayoutDragSource, DropTarget, ShimSupport, LegacyComponent,
-        DragImageReferenceSupport, DragFilterSupport, DragGrabFilterSupport, HasDragCaptionProvider {
+        DragImageReferenceSupport,
+        DragProxySupport, DragFilterSupport, DragGrabFilterSupport, HasDragCaptionProvider {
 
     /**
      * The drop handler which handles dropped components in the layout.
@@ -50,6 +57,10 @@ public class DDAccordion extends Accordion
     // A filter for dragging components.
     private DragFilter dragFilter = DragFilter.ALL;
 
+    // Tracks when the drag and drop state needs to be recomputed
+    private final DDLayoutStateTracker ddStateTracker = new DDLayoutStateTracker(
+            this);
+
     private DragGrabFilter dragGrabFilter;
 
     private DragImageProvider dragImageProvider;
@@ -102,6 +113,7 @@ public class DDAccordion extends Accordion
     @Override
     public void setDragCaptionProvider(DragCaptionProvider provider) {
         this.dragCaptionProvider = provider;
+        markAsDirty();
     }
 
     @Override
@@ -109,6 +121,17 @@ public class DDAccordion extends Accordion
         return dragCaptionProvider;
     }
 
+    @Override
+    public void setLazyDragCaptions(boolean lazy) {
+        getState().ddState.lazyDragCaptions = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragCaptions() {
+        return getState().ddState.lazyDragCaptions;
+    }
+
     /**
      * Sets the current handler which handles dropped components on the layout.
      * By setting a drop handler dropping components on the layout is enabled.
@@ -161,9 +184,7 @@ public class DDAccordion extends Accordion
     @Override
     public void paintContent(PaintTarget target) throws PaintException {
         // Add drop handler
-        if (dropHandler != null && isEnabled()) {
-            dropHandler.getAcceptCriterion().paint(target);
-        }
+        ddStateTracker.paintAcceptCriterion(target, dropHandler);
     }
 
     /**
@@ -201,6 +222,20 @@ public class DDAccordion extends Accordion
         return getState().ddState.iframeShims;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void setDragScopedShim(boolean dragScoped) {
+        DDUtil.setDragScopedShim(getState(), dragScoped);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isDragScopedShim() {
+        return DDUtil.isDragScopedShim(getState());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -213,6 +248,7 @@ public class DDAccordion extends Accordion
      */
     public void setDragFilter(DragFilter dragFilter) {
         this.dragFilter = dragFilter;
+        markAsDirty();
     }
 
     @Override
@@ -223,7 +259,13 @@ public class DDAccordion extends Accordion
     @Override
     public void beforeClientResponse(boolean initial) {
         super.beforeClientResponse(initial);
-        DDUtil.onBeforeClientResponse(this, getState());
+        ddStateTracker.beforeClientResponse(getState(), initial);
+    }
+
+    @Override
+    public void markAsDirty() {
+        super.markAsDirty();
+        DDUtil.markDirty(ddStateTracker);
     }
 
     @Override
@@ -242,6 +284,47 @@ public class DDAccordion extends Accordion
         return this.dragImageProvider;
     }
 
+    @Override
+    public void setLazyDragImages(boolean lazy) {
+        getState().ddState.lazyDragImages = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragImages() {
+        return getState().ddState.lazyDragImages;
+    }
+
+    @Override
+    public void setDragProxyMode(DragProxyMode mode) {
+        DDUtil.setDragProxyMode(getState(), mode);
+    }
+
+    @Override
+    public DragProxyMode getDragProxyMode() {
+        return DDUtil.getDragProxyMode(getState());
+    }
+
+    @Override
+    public void setDragProxyNodeLimit(int limit) {
+        DDUtil.setDragProxyNodeLimit(getState(), limit);
+    }
+
+    @Override
+    public int getDragProxyNodeLimit() {
+        return DDUtil.getDragProxyNodeLimit(getState());
+    }
+
+    @Override
+    public void setTransformDragImage(boolean transform) {
+        DDUtil.setTransformDragImage(getState(), transform);
+    }
+
+    @Override
+    public boolean isTransformDragImage() {
+        return DDUtil.isTransformDragImage(getState());
+    }
+
     @Override
     public DragGrabFilter getDragGrabFilter() {
         return dragGrabFilter;
@@ -250,5 +333,6 @@ public class DDAccordion extends Accordion
     @Override
     public void setDragGrabFilter(DragGrabFilter dragGrabFilter) {
         this.dragGrabFilter = dragGrabFilter;
+        markAsDirty();
     }
 }
\ No newline at end of file
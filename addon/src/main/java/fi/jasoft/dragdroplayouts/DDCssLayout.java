@@ -27,6 +27,7 @@ import com.vaadin.ui.Component;
 import com.vaadin.ui.CssLayout;
 import com.vaadin.ui.LegacyComponent;
 import fi.jasoft.dragdroplayouts.client.ui.Constants;
+import fi.jasoft.dragdroplayouts.client.ui.DragProxyMode;
 import fi.jasoft.dragdroplayouts.client.ui.LayoutDragMode;
 import fi.jasoft.dragdroplayouts.client.ui.csslayout.DDCssLayoutState;
 import fi.jasoft.dragdroplayouts.events.LayoutBoundTransferable;
@@ -36,6 +37,11 @@ import java.util.Map;
 
 /**
  * CssLayout with drag and drop support
+ * <p>
+ * The drag and drop state is recomputed when the layout is marked as dirty.
+ * Changes made through {@code getState(false).ddState} do not mark the
+ * layout as dirty and need a call to {@link #markAsDirty()} for the state
+ * to be recomputed.
  * 
  * @author John Ahlroos / www.jasoft.fi
  * @since 0.7.0
@@ -44,7 +50,8 @@ import java.util.Map;
 @SuppressWarnings("serial")
 public class DDCssLayout extends CssLayout
         implements LayoutDragSource, DropTarget, ShimSupport, LegacyComponent,
-        DragFilterSupport, DragImageReferenceSupport, DragGrabFilterSupport, HasDragCaptionProvider {
+        DragFilterSupport, DragImageReferenceSupport,
+        DragProxySupport, DragGrabFilterSupport, HasDragCaptionProvider {
 
     // Drop handler which handles dd drop events
     private DropHandler dropHandler;
@@ -52,6 +59,10 @@ public class DDCssLayout extends CssLayout
     // A filter for dragging components.
     private DragFilter dragFilter = DragFilter.ALL;
 
+    // Tracks when the drag and drop state needs to be recomputed
+    private final DDLayoutStateTracker ddStateTracker = new DDLayoutStateTracker(
+            this);
+
     private DragGrabFilter dragGrabFilter;
 
     private DragImageProvider dragImageProvider;
@@ -78,6 +89,7 @@ public class DDCssLayout extends CssLayout
     @Override
     public void setDragCaptionProvider(DragCaptionProvider provider) {
         this.dragCaptionProvider = provider;
+        markAsDirty();
     }
 
     @Override
@@ -85,6 +97,17 @@ public class DDCssLayout extends CssLayout
         return dragCaptionProvider;
     }
 
+    @Override
+    public void setLazyDragCaptions(boolean lazy) {
+        getState().ddState.lazyDragCaptions = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragCaptions() {
+        return getState().ddState.lazyDragCaptions;
+    }
+
     @Override
     public DragGrabFilter getDragGrabFilter() {
         return dragGrabFilter;
@@ -93,6 +116,7 @@ public class DDCssLayout extends CssLayout
     @Override
     public void setDragGrabFilter(DragGrabFilter dragGrabFilter) {
         this.dragGrabFilter = dragGrabFilter;
+        markAsDirty();
     }
 
     /**
@@ -205,6 +229,20 @@ public class DDCssLayout extends CssLayout
         return getState().ddState.iframeShims;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void setDragScopedShim(boolean dragScoped) {
+        DDUtil.setDragScopedShim(getState(), dragScoped);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isDragScopedShim() {
+        return DDUtil.isDragScopedShim(getState());
+    }
+
     /**
      * gets the drop handler which handles component drops on the layout
      */
@@ -260,6 +298,7 @@ public class DDCssLayout extends CssLayout
      */
     public void setDragFilter(DragFilter dragFilter) {
         this.dragFilter = dragFilter;
+        markAsDirty();
     }
 
     /**
@@ -267,9 +306,7 @@ public class DDCssLayout extends CssLayout
      * 
      */
     public void paintContent(PaintTarget target) throws PaintException {
-        if (dropHandler != null && isEnabled()) {
-            dropHandler.getAcceptCriterion().paint(target);
-        }
+        ddStateTracker.paintAcceptCriterion(target, dropHandler);
     }
 
     @Override
@@ -280,7 +317,13 @@ public class DDCssLayout extends CssLayout
     @Override
     public void beforeClientResponse(boolean initial) {
         super.beforeClientResponse(initial);
-        DDUtil.onBeforeClientResponse(this, getState());
+        ddStateTracker.beforeClientResponse(getState(), initial);
+    }
+
+    @Override
+    public void markAsDirty() {
+        super.markAsDirty();
+        DDUtil.markDirty(ddStateTracker);
     }
 
     @Override
@@ -298,4 +341,45 @@ public class DDCssLayout extends CssLayout
     public DragImageProvider getDragImageProvider() {
         return this.dragImageProvider;
     }
+
+    @Override
+    public void setLazyDragImages(boolean lazy) {
+        getState().ddState.lazyDragImages = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragImages() {
+        return getState().ddState.lazyDragImages;
+    }
+
+    @Override
+    public void setDragProxyMode(DragProxyMode mode) {
+        DDUtil.setDragProxyMode(getState(), mode);
+    }
+
+    @Override
+    public DragProxyMode getDragProxyMode() {
+        return DDUtil.getDragProxyMode(getState());
+    }
+
+    @Override
+    public void setDragProxyNodeLimit(int limit) {
+        DDUtil.setDragProxyNodeLimit(getState(), limit);
+    }
+
+    @Override
+    public int getDragProxyNodeLimit() {
+        return DDUtil.getDragProxyNodeLimit(getState());
+    }
+
+    @Override
+    public void setTransformDragImage(boolean transform) {
+        DDUtil.setTransformDragImage(getState(), transform);
+    }
+
+    @Override
+    public boolean isTransformDragImage() {
+        return DDUtil.isTransformDragImage(getState());
+    }
 }
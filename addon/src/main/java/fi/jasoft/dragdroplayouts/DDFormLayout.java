@@ -26,6 +26,7 @@ import com.vaadin.ui.Component;
 import com.vaadin.ui.FormLayout;
 import com.vaadin.ui.LegacyComponent;
 import fi.jasoft.dragdroplayouts.client.ui.Constants;
+import fi.jasoft.dragdroplayouts.client.ui.DragProxyMode;
 import fi.jasoft.dragdroplayouts.client.ui.LayoutDragMode;
 import fi.jasoft.dragdroplayouts.client.ui.formlayout.DDFormLayoutState;
 import fi.jasoft.dragdroplayouts.events.LayoutBoundTransferable;
@@ -35,6 +36,11 @@ import java.util.Map;
 
 /**
  * Form layout with support for drag and drop
+ * <p>
+ * The drag and drop state is recomputed when the layout is marked as dirty.
+ * Changes made through {@code getState(false).ddState} do not mark the
+ * layout as dirty and need a call to {@link #markAsDirty()} for the state
+ * to be recomputed.
  * 
  * @author John Ahlroos / www.jasoft.fi
  * @since 0.8.0
@@ -42,7 +48,8 @@ import java.util.Map;
  */
 public class DDFormLayout extends FormLayout
         implements LayoutDragSource, DropTarget, ShimSupport, LegacyComponent,
-        DragFilterSupport, DragImageReferenceSupport, DragGrabFilterSupport, HasDragCaptionProvider {
+        DragFilterSupport, DragImageReferenceSupport,
+        DragProxySupport, DragGrabFilterSupport, HasDragCaptionProvider {
     /**
      * The drop handler which handles dropped components in the layout.
      */
@@ -51,6 +58,10 @@ public class DDFormLayout extends FormLayout
     // A filter for dragging components.
     private DragFilter dragFilter = DragFilter.ALL;
 
+    // Tracks when the drag and drop state needs to be recomputed
+    private final DDLayoutStateTracker ddStateTracker = new DDLayoutStateTracker(
+            this);
+
     private DragGrabFilter dragGrabFilter;
 
     private DragImageProvider dragImageProvider;
@@ -65,11 +76,13 @@ public class DDFormLayout extends FormLayout
     @Override
     public void setDragGrabFilter(DragGrabFilter dragGrabFilter) {
         this.dragGrabFilter = dragGrabFilter;
+        markAsDirty();
     }
 
     @Override
     public void setDragCaptionProvider(DragCaptionProvider provider) {
         this.dragCaptionProvider = provider;
+        markAsDirty();
     }
 
     @Override
@@ -77,6 +90,17 @@ public class DDFormLayout extends FormLayout
         return dragCaptionProvider;
     }
 
+    @Override
+    public void setLazyDragCaptions(boolean lazy) {
+        getState().ddState.lazyDragCaptions = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragCaptions() {
+        return getState().ddState.lazyDragCaptions;
+    }
+
     /**
      * Contains the component over which the drop was made and the index on
      * which the drop was made.
@@ -179,9 +203,7 @@ public class DDFormLayout extends FormLayout
      * .Map)
      */
     public void paintContent(PaintTarget target) throws PaintException {
-        if (dropHandler != null && isEnabled()) {
-            dropHandler.getAcceptCriterion().paint(target);
-        }
+        ddStateTracker.paintAcceptCriterion(target, dropHandler);
     }
 
     public TargetDetails translateDropTargetDetails(
@@ -275,6 +297,20 @@ public class DDFormLayout extends FormLayout
         return getState().ddState.iframeShims;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void setDragScopedShim(boolean dragScoped) {
+        DDUtil.setDragScopedShim(getState(), dragScoped);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isDragScopedShim() {
+        return DDUtil.isDragScopedShim(getState());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -287,6 +323,7 @@ public class DDFormLayout extends FormLayout
      */
     public void setDragFilter(DragFilter dragFilter) {
         this.dragFilter = dragFilter;
+        markAsDirty();
     }
 
     @Override
@@ -297,7 +334,13 @@ public class DDFormLayout extends FormLayout
     @Override
     public void beforeClientResponse(boolean initial) {
         super.beforeClientResponse(initial);
-        DDUtil.onBeforeClientResponse(this, getState());
+        ddStateTracker.beforeClientResponse(getState(), initial);
+    }
+
+    @Override
+    public void markAsDirty() {
+        super.markAsDirty();
+        DDUtil.markDirty(ddStateTracker);
     }
 
     @Override
@@ -315,4 +358,45 @@ public class DDFormLayout extends FormLayout
     public DragImageProvider getDragImageProvider() {
         return this.dragImageProvider;
     }
+
+    @Override
+    public void setLazyDragImages(boolean lazy) {
+        getState().ddState.lazyDragImages = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragImages() {
+        return getState().ddState.lazyDragImages;
+    }
+
+    @Override
+    public void setDragProxyMode(DragProxyMode mode) {
+        DDUtil.setDragProxyMode(getState(), mode);
+    }
+
+    @Override
+    public DragProxyMode getDragProxyMode() {
+        return DDUtil.getDragProxyMode(getState());
+    }
+
+    @Override
+    public void setDragProxyNodeLimit(int limit) {
+        DDUtil.setDragProxyNodeLimit(getState(), limit);
+    }
+
+    @Override
+    public int getDragProxyNodeLimit() {
+        return DDUtil.getDragProxyNodeLimit(getState());
+    }
+
+    @Override
+    public void setTransformDragImage(boolean transform) {
+        DDUtil.setTransformDragImage(getState(), transform);
+    }
+
+    @Override
+    public boolean isTransformDragImage() {
+        return DDUtil.isTransformDragImage(getState());
+    }
 }
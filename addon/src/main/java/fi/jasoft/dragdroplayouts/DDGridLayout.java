@@ -27,6 +27,7 @@ import com.vaadin.ui.Component;
 import com.vaadin.ui.GridLayout;
 import com.vaadin.ui.LegacyComponent;
 import fi.jasoft.dragdroplayouts.client.ui.Constants;
+import fi.jasoft.dragdroplayouts.client.ui.DragProxyMode;
 import fi.jasoft.dragdroplayouts.client.ui.LayoutDragMode;
 import fi.jasoft.dragdroplayouts.client.ui.gridlayout.DDGridLayoutState;
 import fi.jasoft.dragdroplayouts.events.LayoutBoundTransferable;
@@ -36,6 +37,11 @@ import java.util.Map;
 
 /**
  * Grid layout with drag and drop support
+ * <p>
+ * The drag and drop state is recomputed when the layout is marked as dirty.
+ * Changes made through {@code getState(false).ddState} do not mark the
+ * layout as dirty and need a call to {@link #markAsDirty()} for the state
+ * to be recomputed.
  * 
  * @author John Ahlroos / www.jasoft.fi
  * @since 0.4.0
@@ -43,13 +49,18 @@ import java.util.Map;
 @SuppressWarnings("serial")
 public class DDGridLayout extends GridLayout
         implements LayoutDragSource, DropTarget, ShimSupport, LegacyComponent,
-        DragFilterSupport, DragImageReferenceSupport, DragGrabFilterSupport, HasDragCaptionProvider {
+        DragFilterSupport, DragImageReferenceSupport,
+        DragProxySupport, DragGrabFilterSupport, HasDragCaptionProvider {
 
     private DropHandler dropHandler;
 
     // A filter for dragging components.
     private DragFilter dragFilter = DragFilter.ALL;
 
+    // Tracks when the drag and drop state needs to be recomputed
+    private final DDLayoutStateTracker ddStateTracker = new DDLayoutStateTracker(
+            this);
+
     private DragGrabFilter dragGrabFilter;
 
     private DragImageProvider dragImageProvider;
@@ -64,11 +75,13 @@ public class DDGridLayout extends GridLayout
     @Override
     public void setDragGrabFilter(DragGrabFilter dragGrabFilter) {
         this.dragGrabFilter = dragGrabFilter;
+        markAsDirty();
     }
 
     @Override
     public void setDragCaptionProvider(DragCaptionProvider provider) {
         this.dragCaptionProvider = provider;
+        markAsDirty();
     }
 
     @Override
@@ -76,6 +89,17 @@ public class DDGridLayout extends GridLayout
         return dragCaptionProvider;
     }
 
+    @Override
+    public void setLazyDragCaptions(boolean lazy) {
+        getState().ddState.lazyDragCaptions = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragCaptions() {
+        return getState().ddState.lazyDragCaptions;
+    }
+
     /**
      * Target details for a drop event
      */
@@ -265,9 +289,7 @@ public class DDGridLayout extends GridLayout
 
     @Override
     public void paintContent(PaintTarget target) throws PaintException {
-        if (dropHandler != null && isEnabled()) {
-            dropHandler.getAcceptCriterion().paint(target);
-        }
+        ddStateTracker.paintAcceptCriterion(target, dropHandler);
     }
 
     @Override
@@ -378,6 +400,20 @@ public class DDGridLayout extends GridLayout
         return getState().ddState.iframeShims;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void setDragScopedShim(boolean dragScoped) {
+        DDUtil.setDragScopedShim(getState(), dragScoped);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isDragScopedShim() {
+        return DDUtil.isDragScopedShim(getState());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -390,6 +426,7 @@ public class DDGridLayout extends GridLayout
      */
     public void setDragFilter(DragFilter dragFilter) {
         this.dragFilter = dragFilter;
+        markAsDirty();
     }
 
     @Override
@@ -400,7 +437,13 @@ public class DDGridLayout extends GridLayout
     @Override
     public void beforeClientResponse(boolean initial) {
         super.beforeClientResponse(initial);
-        DDUtil.onBeforeClientResponse(this, getState());
+        ddStateTracker.beforeClientResponse(getState(), initial);
+    }
+
+    @Override
+    public void markAsDirty() {
+        super.markAsDirty();
+        DDUtil.markDirty(ddStateTracker);
     }
 
     @Override
@@ -414,4 +457,45 @@ public class DDGridLayout extends GridLayout
         return this.dragImageProvider;
     }
 
+    @Override
+    public void setLazyDragImages(boolean lazy) {
+        getState().ddState.lazyDragImages = lazy;
+        markAsDirty();
+    }
+
+    @Override
+    public boolean isLazyDragImages() {
+        return getState().ddState.lazyDragImages;
+    }
+
+    @Override
+    public void setDragProxyMode(DragProxyMode mode) {
+        DDUtil.setDragProxyMode(getState(), mode);
+    }
+
+    @Override
+    public DragProxyMode getDragProxyMode() {
+        return DDUtil.getDragProxyMode(getState());
+    }
+
+    @Override
+    public void setDragProxyNodeLimit(int limit) {
+        DDUtil.setDragProxyNodeLimit(getState(), limit);
+    }
+
+    @Override
+    public int getDragProxyNodeLimit() {
+        return DDUtil.getDragProxyNodeLimit(getState());
+    }
+
+    @Override
+    public void setTransformDragImage(boolean transform) {
+        DDUtil.setTransformDragImage(getState(), transform);
+    }
+
+    @Override
+    public boolean isTransformDragImage() {
+        return DDUtil.isTransformDragImage(getState());
+    }
+
 }
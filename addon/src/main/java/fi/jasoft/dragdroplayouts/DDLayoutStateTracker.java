@@ -0,0 +1,320 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+import com.vaadin.event.dd.DropHandler;
+import com.vaadin.event.dd.acceptcriteria.AcceptCriterion;
+import com.vaadin.server.AbstractClientConnector;
+import com.vaadin.server.ClientConnectorRpcs;
+import com.vaadin.server.PaintException;
+import com.vaadin.server.PaintTarget;
+import com.vaadin.shared.Connector;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.HasComponents;
+import com.vaadin.ui.HasComponents.ComponentAttachDetachNotifier;
+import com.vaadin.ui.HasComponents.ComponentAttachEvent;
+import com.vaadin.ui.HasComponents.ComponentAttachListener;
+import com.vaadin.ui.HasComponents.ComponentDetachEvent;
+import com.vaadin.ui.HasComponents.ComponentDetachListener;
+
+import fi.jasoft.dragdroplayouts.client.ui.Constants;
+import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutServerRpc;
+import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutState;
+import fi.jasoft.dragdroplayouts.client.ui.interfaces.DragAndDropAwareState;
+import fi.jasoft.dragdroplayouts.interfaces.CachingDragFilter;
+import fi.jasoft.dragdroplayouts.interfaces.CachingDragGrabFilter;
+import fi.jasoft.dragdroplayouts.interfaces.DragFilter;
+import fi.jasoft.dragdroplayouts.interfaces.DragFilterSupport;
+import fi.jasoft.dragdroplayouts.interfaces.DragGrabFilter;
+import fi.jasoft.dragdroplayouts.interfaces.DragGrabFilterSupport;
+
+/**
+ * Tracks changes to the inputs of a layouts {@link DDLayoutState} so that the
+ * state is only recomputed when something has actually changed.
+ * <p>
+ * The state is considered dirty when a child component is attached or
+ * detached, when a component is attached to or detached from a container
+ * inside a child, or when {@link #markDirty()} is called. Layouts call
+ * {@link #markDirty()} whenever a drag filter or provider is changed or the
+ * layout itself is marked as dirty. Attached and detached components only
+ * cause the changed subtrees to be evaluated again, while
+ * {@link #markDirty()} evaluates every component again so that filters
+ * depending on something else than the component hierarchy are refreshed.
+ * <p>
+ * The tracker also answers the {@link DDLayoutServerRpc} requests of the
+ * layout for details which are resolved lazily, and paints the accept
+ * criterion of the layout only when it has changed.
+ */
+@SuppressWarnings("serial")
+public class DDLayoutStateTracker implements Serializable {
+
+    private final HasComponents layout;
+
+    // Layouts can already have children when the tracker is created
+    private boolean dirty = true;
+
+    // Must the subtrees of the children be evaluated again
+    private boolean subtreesDirty;
+
+    // The state of the layout, known after the first response
+    private DragAndDropAwareState state;
+
+    // Icons of the drag captions, null if the layout cannot have resources
+    private final DragIconRegistry dragIconRegistry;
+
+    // Non-grabbable components under the children of the layout
+    private final NonGrabbableTracker nonGrabbableTracker = new NonGrabbableTracker(
+            this);
+
+    // Have lazy drag images been resolved since the last response
+    private boolean dragImagesResolved;
+
+    // The accept criterion the client has and its fingerprint
+    private AcceptCriterion paintedCriterion;
+    private int criterionFingerprint;
+
+    /**
+     * Creates a tracker for a layout
+     *
+     * @param layout
+     *            The layout which drag and drop state should be tracked
+     */
+    public DDLayoutStateTracker(HasComponents layout) {
+        this.layout = layout;
+        this.dragIconRegistry = layout instanceof AbstractClientConnector
+                ? new DragIconRegistry((AbstractClientConnector) layout)
+                : null;
+
+        if (layout instanceof ComponentAttachDetachNotifier) {
+            ComponentAttachDetachNotifier notifier = (ComponentAttachDetachNotifier) layout;
+            notifier.addComponentAttachListener(new ComponentAttachListener() {
+                @Override
+                public void componentAttachedToContainer(
+                        ComponentAttachEvent event) {
+                    markSubtreeDirty();
+                }
+            });
+            notifier.addComponentDetachListener(new ComponentDetachListener() {
+                @Override
+                public void componentDetachedFromContainer(
+                        ComponentDetachEvent event) {
+                    invalidateCachedFilters(event.getDetachedComponent());
+                    nonGrabbableTracker.remove(event.getDetachedComponent());
+                    markSubtreeDirty();
+                }
+            });
+        }
+
+        if (layout instanceof AbstractClientConnector) {
+            ClientConnectorRpcs.registerRpc((AbstractClientConnector) layout,
+                    new DDLayoutServerRpc() {
+                        @Override
+                        public void requestDragCaption(Connector component) {
+                            resolveDragCaption(component);
+                        }
+
+                        @Override
+                        public void requestDragImage(Connector component) {
+                            resolveDragImage(component);
+                        }
+                    }, DDLayoutServerRpc.class);
+        }
+    }
+
+    /**
+     * Marks the drag and drop state as dirty. The state will be recomputed
+     * before the next response is sent to the client, evaluating the filters
+     * of every component again.
+     */
+    public void markDirty() {
+        dirty = true;
+        subtreesDirty = true;
+    }
+
+    /*
+     * Marks the state dirty when only the component hierarchy has changed, the
+     * unchanged subtrees are not evaluated again
+     */
+    void markSubtreeDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Does the drag and drop state need to be recomputed
+     *
+     * @return true if the state will be recomputed on the next response
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Recomputes the drag and drop state of the layout if it is dirty. Should
+     * be called from the layouts beforeClientResponse().
+     *
+     * @param state
+     *            The state of the layout
+     */
+    public void beforeClientResponse(DragAndDropAwareState state) {
+        beforeClientResponse(state, false);
+    }
+
+    /**
+     * Recomputes the drag and drop state of the layout if it is dirty. Should
+     * be called from the layouts beforeClientResponse().
+     *
+     * @param state
+     *            The state of the layout
+     * @param initial
+     *            Is this the first response for the layout, in which case
+     *            the client does not yet know anything about the layout
+     */
+    public void beforeClientResponse(DragAndDropAwareState state,
+            boolean initial) {
+        if (initial) {
+            paintedCriterion = null;
+        }
+        this.state = state;
+        dragImagesResolved = false;
+        if (dirty) {
+            if (subtreesDirty) {
+                nonGrabbableTracker.invalidate();
+                subtreesDirty = false;
+            }
+            DDUtil.onBeforeClientResponse(layout, state, dragIconRegistry,
+                    nonGrabbableTracker);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Paints the accept criterion of the drop handler of the layout, or
+     * nothing if the layout does not currently accept drops. Should be called
+     * from the layouts paintContent().
+     *
+     * @param target
+     *            The paint target of the layout
+     * @param dropHandler
+     *            The drop handler of the layout, can be null
+     * @throws PaintException
+     *             if the criterion cannot be painted
+     * @see #paintAcceptCriterion(PaintTarget, AcceptCriterion)
+     */
+    public void paintAcceptCriterion(PaintTarget target,
+            DropHandler dropHandler) throws PaintException {
+        paintAcceptCriterion(target,
+                dropHandler != null && layout.isEnabled()
+                        ? dropHandler.getAcceptCriterion() : null);
+    }
+
+    /**
+     * Paints the accept criterion of the layout. The criterion is only painted
+     * when it is not the one painted the previous time, otherwise an empty
+     * criterion tells the client to keep its current accept rules. Should be
+     * called from the layouts paintContent().
+     * <p>
+     * Criteria are compared by identity, so a drop handler should return the
+     * same criterion instance as long as its rules do not change.
+     *
+     * @param target
+     *            The paint target of the layout
+     * @param criterion
+     *            The accept criterion of the drop handler or null if the
+     *            layout does not currently accept drops
+     * @throws PaintException
+     *             if the criterion cannot be painted
+     */
+    public void paintAcceptCriterion(PaintTarget target,
+            AcceptCriterion criterion) throws PaintException {
+        if (criterion == null) {
+            // The client removes its drop handler
+            paintedCriterion = null;
+            return;
+        }
+
+        if (criterion != paintedCriterion) {
+            paintedCriterion = criterion;
+            criterionFingerprint++;
+            target.addAttribute(
+                    Constants.ACCEPT_CRITERION_FINGERPRINT_ATTRIBUTE,
+                    criterionFingerprint);
+            criterion.paint(target);
+        } else {
+            target.addAttribute(
+                    Constants.ACCEPT_CRITERION_FINGERPRINT_ATTRIBUTE,
+                    criterionFingerprint);
+            target.startTag("-ac");
+            target.endTag("-ac");
+        }
+    }
+
+    /*
+     * Forgets the cached filter results of a removed child, also when the
+     * layout is not attached and the child does not receive a detach event
+     */
+    private void invalidateCachedFilters(Component component) {
+        if (layout instanceof DragFilterSupport) {
+            DragFilter filter = ((DragFilterSupport) layout).getDragFilter();
+            if (filter instanceof CachingDragFilter) {
+                ((CachingDragFilter) filter).invalidate(component);
+            }
+        }
+        if (layout instanceof DragGrabFilterSupport) {
+            DragGrabFilter filter = ((DragGrabFilterSupport) layout)
+                    .getDragGrabFilter();
+            if (filter instanceof CachingDragGrabFilter) {
+                ((CachingDragGrabFilter) filter).invalidate(component);
+            }
+        }
+    }
+
+    private void resolveDragImage(Connector component) {
+        if (state == null || !(component instanceof Component)
+                || !state.getDragAndDropState().lazyDragImages) {
+            return;
+        }
+
+        Component c = (Component) component;
+        if (c.getParent() != layout) {
+            return;
+        }
+
+        DDLayoutState ddState = state.getDragAndDropState();
+        if (!dragImagesResolved) {
+            // Only the answers of this round trip are sent, the client caches
+            // the previous ones
+            ddState.referenceImageComponents = new HashMap<>();
+            dragImagesResolved = true;
+        }
+        ddState.referenceImageComponents.put(c, DDUtil.getDragImage(layout, c));
+        layout.getUI().getConnectorTracker().markDirty(layout);
+    }
+
+    private void resolveDragCaption(Connector component) {
+        if (state == null || !(component instanceof Component)
+                || !state.getDragAndDropState().lazyDragCaptions) {
+            return;
+        }
+
+        if (DDUtil.resolveDragCaption(layout, state, (Component) component,
+                dragIconRegistry)) {
+            // Send the state without invalidating the resolved captions
+            // like markAsDirty() would
+            layout.getUI().getConnectorTracker().markDirty(layout);
+        }
+    }
+}
@@ -16,12 +16,11 @@ package fi.jasoft.dragdroplayouts;
 import com.vaadin.event.dd.DropHandler;
 import com.vaadin.server.AbstractClientConnector;
 import com.vaadin.server.ClientConnectorResources;
-import com.vaadin.server.KeyMapper;
-import com.vaadin.server.Resource;
 import com.vaadin.shared.Connector;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.HasComponents;
 import fi.jasoft.dragdroplayouts.client.ui.DragCaptionInfo;
+import fi.jasoft.dragdroplayouts.client.ui.DragProxyMode;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutState;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.DragAndDropAwareState;
 import fi.jasoft.dragdroplayouts.drophandlers.AbstractDefaultLayoutDropHandler;
@@ -29,89 +28,236 @@ import fi.jasoft.dragdroplayouts.interfaces.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DDUtil {
 
+    /**
+     * Recomputes the drag and drop state of a layout by evaluating every
+     * child again. Drag caption icons are registered as resources of the
+     * layout under keys which can change on every call, use
+     * {@link DDLayoutStateTracker} for keys which stay the same.
+     *
+     * @param layout
+     *            The layout
+     * @param state
+     *            The state of the layout
+     */
     public static void onBeforeClientResponse(HasComponents layout,
             DragAndDropAwareState state) {
+        if (!(layout instanceof AbstractClientConnector)) {
+            onBeforeClientResponse(layout, state, null, null);
+            return;
+        }
+
+        // The registry only knows the icons of this call, so the icons of the
+        // previous call which are no longer used are removed here
+        AbstractClientConnector connector = (AbstractClientConnector) layout;
+        Set<String> unusedIconKeys = getIconKeys(
+                state.getDragAndDropState().dragCaptions);
+        onBeforeClientResponse(layout, state,
+                new DragIconRegistry(connector), null);
+        unusedIconKeys.removeAll(
+                getIconKeys(state.getDragAndDropState().dragCaptions));
+        for (String key : unusedIconKeys) {
+            ClientConnectorResources.setResource(connector, key, null);
+        }
+    }
+
+    private static Set<String> getIconKeys(
+            Map<Connector, DragCaptionInfo> dragCaptions) {
+        Set<String> keys = new HashSet<>();
+        for (DragCaptionInfo dci : dragCaptions.values()) {
+            if (dci.iconKey != null) {
+                keys.add(dci.iconKey);
+            }
+        }
+        return keys;
+    }
+
+    public static void onBeforeClientResponse(HasComponents layout,
+            DragAndDropAwareState state, DragIconRegistry iconRegistry,
+            NonGrabbableTracker nonGrabbableTracker) {
         DDLayoutState dragAndDropState = state.getDragAndDropState();
         Iterator<Component> componentIterator = layout.iterator();
 
-        dragAndDropState.draggable = new ArrayList<>();
+        List<Connector> draggable = new ArrayList<>();
+        List<Connector> nonDraggable = new ArrayList<>();
+
+        // Released after the new captions have acquired their icons so that
+        // icons still in use keep their keys
+        Map<Connector, DragCaptionInfo> previousDragCaptions = dragAndDropState.dragCaptions;
+
         dragAndDropState.referenceImageComponents = new HashMap<>();
         dragAndDropState.nonGrabbable = new ArrayList<>();
         dragAndDropState.dragCaptions = new HashMap<>();
 
-        if (layout instanceof AbstractClientConnector) {
-            for (DragCaptionInfo dci : dragAndDropState.dragCaptions.values()) {
-                if (dci.iconKey != null) {
-                    ClientConnectorResources.setResource(
-                            (AbstractClientConnector) layout,
-                            dci.iconKey,
-                            null
-                    );
-                }
+        DragGrabFilter dragGrabFilter = null;
+        if (layout instanceof DragGrabFilterSupport) {
+            dragGrabFilter = ((DragGrabFilterSupport) layout)
+                    .getDragGrabFilter();
+            if (dragGrabFilter == null && nonGrabbableTracker != null) {
+                // Stop listening to the subtrees of a removed filter
+                nonGrabbableTracker.clear();
             }
         }
 
-        KeyMapper<Resource> keyMapper = new KeyMapper<>();
-
         while (componentIterator.hasNext()) {
             Component c = componentIterator.next();
 
-            if (layout instanceof DragFilterSupport
-                    && ((DragFilterSupport) layout).getDragFilter()
-                            .isDraggable(c)) {
-                dragAndDropState.draggable.add(c);
+            if (layout instanceof DragFilterSupport) {
+                if (((DragFilterSupport) layout).getDragFilter()
+                        .isDraggable(c)) {
+                    draggable.add(c);
+                } else {
+                    nonDraggable.add(c);
+                }
             }
 
-            if (layout instanceof DragGrabFilterSupport) {
-                DragGrabFilter dragGrabFilter = ((DragGrabFilterSupport) layout).getDragGrabFilter();
-                if (dragGrabFilter != null) {
+            if (dragGrabFilter != null) {
+                if (nonGrabbableTracker != null) {
+                    nonGrabbableTracker.addNonGrabbedComponents(
+                            dragAndDropState.nonGrabbable, c,
+                            dragGrabFilter);
+                } else {
                     addNonGrabbedComponents(dragAndDropState.nonGrabbable, c, dragGrabFilter);
                 }
             }
 
-            if (layout instanceof HasDragCaptionProvider) {
-                DragCaptionProvider dragCaptionProvider = ((HasDragCaptionProvider) layout)
-                        .getDragCaptionProvider();
-
-                if (dragCaptionProvider != null) {
-                    DragCaption dragCaption = dragCaptionProvider.getDragCaption(c);
-
-                    if (dragCaption != null) {
-                        String dragIconKey = null;
-                        if (dragCaption.getIcon() != null
-                                && layout instanceof AbstractClientConnector) {
-                            dragIconKey = keyMapper.key(dragCaption.getIcon());
-                            ClientConnectorResources.setResource(
-                                    (AbstractClientConnector) layout,
-                                    dragIconKey,
-                                    dragCaption.getIcon()
-                            );
-                        }
-
-                        DragCaptionInfo dci = new DragCaptionInfo();
-                        dci.caption = dragCaption.getCaption();
-                        dci.contentMode = dragCaption.getContentMode();
-                        dci.iconKey = dragIconKey;
-
-                        dragAndDropState.dragCaptions.put(c, dci);
-                    }
+            // Lazy drag captions are resolved by resolveDragCaption()
+            if (!dragAndDropState.lazyDragCaptions) {
+                DragCaptionInfo dci = createDragCaptionInfo(layout, c,
+                        iconRegistry);
+                if (dci != null) {
+                    dragAndDropState.dragCaptions.put(c, dci);
+                }
+            }
+
+            // Lazy drag images are resolved by resolveDragImage()
+            if (!dragAndDropState.lazyDragImages) {
+                Component dragImage = getDragImage(layout, c);
+                if (dragImage != null) {
+                    dragAndDropState.referenceImageComponents.put(c,
+                            dragImage);
                 }
             }
+        }
+
+        releaseDragCaptionIcons(previousDragCaptions, iconRegistry);
+
+        if (dragAndDropState.lazyDragImages) {
+            // Clients need to request their cached drag images again
+            dragAndDropState.dragImageRevision++;
+        }
+
+        // Send whichever form is smaller, usually only a few children are
+        // not draggable
+        if (!draggable.isEmpty() && nonDraggable.size() < draggable.size()) {
+            dragAndDropState.draggableByDefault = true;
+            dragAndDropState.draggable = new ArrayList<>();
+            dragAndDropState.nonDraggable = nonDraggable;
+        } else {
+            dragAndDropState.draggableByDefault = false;
+            dragAndDropState.draggable = draggable;
+            dragAndDropState.nonDraggable = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Resolves the drag caption of a single child component on demand and
+     * stores it into the drag and drop state. Used when drag captions are
+     * resolved lazily.
+     *
+     * @param layout
+     *            The layout containing the component
+     * @param state
+     *            The state of the layout
+     * @param component
+     *            The child component being dragged
+     * @param iconRegistry
+     *            The registry of the drag icons of the layout
+     * @return true if the state was changed
+     */
+    public static boolean resolveDragCaption(HasComponents layout,
+            DragAndDropAwareState state, Component component,
+            DragIconRegistry iconRegistry) {
+        DDLayoutState dragAndDropState = state.getDragAndDropState();
+        if (component.getParent() != layout
+                || dragAndDropState.dragCaptions.containsKey(component)) {
+            return false;
+        }
+
+        DragCaptionInfo dci = createDragCaptionInfo(layout, component,
+                iconRegistry);
+        if (dci == null) {
+            // Cache the missing caption so the client does not ask again
+            dci = new DragCaptionInfo();
+        }
+        dragAndDropState.dragCaptions.put(component, dci);
+        return true;
+    }
+
+    /**
+     * Returns the reference drag image of a child component of the layout or
+     * null if the component has no drag image
+     * 
+     * @param layout
+     *            The layout containing the component
+     * @param c
+     *            The child component
+     * @return the component used as the drag image or null
+     */
+    public static Component getDragImage(HasComponents layout, Component c) {
+        if (layout instanceof DragImageReferenceSupport) {
+            DragImageProvider provider = ((DragImageReferenceSupport) layout)
+                    .getDragImageProvider();
+            if (provider != null) {
+                return provider.getDragImage(c);
+            }
+        }
+        return null;
+    }
 
-            if (layout instanceof DragImageReferenceSupport) {
-                DragImageProvider provider = ((DragImageReferenceSupport) layout)
-                        .getDragImageProvider();
-                if (provider != null) {
-                    Component dragImage = provider.getDragImage(c);
-                    if (dragImage != null) {
-                        dragAndDropState.referenceImageComponents.put(c,
-                                dragImage);
-                    }
+    private static DragCaptionInfo createDragCaptionInfo(HasComponents layout,
+            Component c, DragIconRegistry iconRegistry) {
+        if (!(layout instanceof HasDragCaptionProvider)) {
+            return null;
+        }
+
+        DragCaptionProvider dragCaptionProvider = ((HasDragCaptionProvider) layout)
+                .getDragCaptionProvider();
+        if (dragCaptionProvider == null) {
+            return null;
+        }
+
+        DragCaption dragCaption = dragCaptionProvider.getDragCaption(c);
+        if (dragCaption == null) {
+            return null;
+        }
+
+        String dragIconKey = null;
+        if (dragCaption.getIcon() != null && iconRegistry != null) {
+            dragIconKey = iconRegistry.acquire(dragCaption.getIcon());
+        }
+
+        DragCaptionInfo dci = new DragCaptionInfo();
+        dci.caption = dragCaption.getCaption();
+        dci.contentMode = dragCaption.getContentMode();
+        dci.iconKey = dragIconKey;
+        return dci;
+    }
+
+    private static void releaseDragCaptionIcons(
+            Map<Connector, DragCaptionInfo> dragCaptions,
+            DragIconRegistry iconRegistry) {
+        if (iconRegistry != null) {
+            for (DragCaptionInfo dci : dragCaptions.values()) {
+                if (dci.iconKey != null) {
+                    iconRegistry.release(dci.iconKey);
                 }
             }
         }
@@ -129,6 +275,89 @@ public class DDUtil {
         }
     }
 
+    /**
+     * Marks the drag and drop state of a layout dirty. Should be called from
+     * the layouts markAsDirty(), which super constructors can call before the
+     * tracker of the layout has been created.
+     *
+     * @param tracker
+     *            The state tracker of the layout, can be null
+     */
+    public static void markDirty(DDLayoutStateTracker tracker) {
+        if (tracker != null) {
+            tracker.markDirty();
+        }
+    }
+
+    /**
+     * @see DragProxySupport#setDragProxyMode(DragProxyMode)
+     */
+    public static void setDragProxyMode(DragAndDropAwareState state,
+            DragProxyMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException(
+                    "The drag proxy mode cannot be null");
+        }
+        state.getDragAndDropState().dragProxyMode = mode;
+    }
+
+    /**
+     * @see DragProxySupport#getDragProxyMode()
+     */
+    public static DragProxyMode getDragProxyMode(DragAndDropAwareState state) {
+        return state.getDragAndDropState().dragProxyMode;
+    }
+
+    /**
+     * @see DragProxySupport#setDragProxyNodeLimit(int)
+     */
+    public static void setDragProxyNodeLimit(DragAndDropAwareState state,
+            int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException(
+                    "The drag proxy node limit must be positive, was "
+                            + limit);
+        }
+        state.getDragAndDropState().dragProxyNodeLimit = limit;
+    }
+
+    /**
+     * @see DragProxySupport#getDragProxyNodeLimit()
+     */
+    public static int getDragProxyNodeLimit(DragAndDropAwareState state) {
+        return state.getDragAndDropState().dragProxyNodeLimit;
+    }
+
+    /**
+     * @see DragProxySupport#setTransformDragImage(boolean)
+     */
+    public static void setTransformDragImage(DragAndDropAwareState state,
+            boolean transform) {
+        state.getDragAndDropState().transformDragImage = transform;
+    }
+
+    /**
+     * @see DragProxySupport#isTransformDragImage()
+     */
+    public static boolean isTransformDragImage(DragAndDropAwareState state) {
+        return state.getDragAndDropState().transformDragImage;
+    }
+
+    /**
+     * @see ShimSupport#setDragScopedShim(boolean)
+     */
+    public static void setDragScopedShim(DragAndDropAwareState state,
+            boolean dragScoped) {
+        state.getDragAndDropState().dragScopedIframeShims = dragScoped;
+    }
+
+    /**
+     * @see ShimSupport#isDragScopedShim()
+     */
+    public static boolean isDragScopedShim(DragAndDropAwareState state) {
+        return state.getDragAndDropState().dragScopedIframeShims;
+    }
+
     public static void verifyHandlerType(HasComponents layout,
             DropHandler handler) {
         if (handler instanceof AbstractDefaultLayoutDropHandler) {
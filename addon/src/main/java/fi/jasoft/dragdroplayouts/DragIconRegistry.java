@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vaadin.server.AbstractClientConnector;
+import com.vaadin.server.ClientConnectorResources;
+import com.vaadin.server.Resource;
+
+/**
+ * Registers the drag caption icons of a layout as resources of the layout.
+ * <p>
+ * Each distinct icon is registered once under a key which stays the same as
+ * long as some drag caption uses the icon, so the client can keep using the
+ * same icon URL between responses. Icons are reference counted and removed
+ * from the layout when no drag caption uses them anymore.
+ */
+@SuppressWarnings("serial")
+public class DragIconRegistry implements Serializable {
+
+    private static final String KEY_PREFIX = "dragIcon";
+
+    private final AbstractClientConnector layout;
+
+    private final Map<Resource, String> keys = new HashMap<>();
+
+    private final Map<String, Resource> icons = new HashMap<>();
+
+    private final Map<String, Integer> references = new HashMap<>();
+
+    private long lastKey;
+
+    /**
+     * Creates a registry for the icons of a layout
+     *
+     * @param layout
+     *            The layout which the icons are registered to
+     */
+    public DragIconRegistry(AbstractClientConnector layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Adds a reference to an icon, registering the icon to the layout if it
+     * is not yet in use.
+     *
+     * @param icon
+     *            The icon of a drag caption
+     * @return The resource key of the icon
+     */
+    public String acquire(Resource icon) {
+        String key = keys.get(icon);
+        if (key == null) {
+            key = KEY_PREFIX + (++lastKey);
+            keys.put(icon, key);
+            icons.put(key, icon);
+            references.put(key, 1);
+            ClientConnectorResources.setResource(layout, key, icon);
+        } else {
+            references.put(key, references.get(key) + 1);
+        }
+        return key;
+    }
+
+    /**
+     * Removes a reference to an icon. The icon is removed from the layout
+     * when it is no longer referenced.
+     *
+     * @param key
+     *            The resource key returned by {@link #acquire(Resource)}
+     */
+    public void release(String key) {
+        Integer count = references.get(key);
+        if (count == null) {
+            return;
+        }
+
+        if (count > 1) {
+            references.put(key, count - 1);
+        } else {
+            references.remove(key);
+            keys.remove(icons.remove(key));
+            ClientConnectorResources.setResource(layout, key, null);
+        }
+    }
+
+    /**
+     * Returns the number of icons currently registered to the layout
+     */
+    public int size() {
+        return icons.size();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.shared.Connector;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.HasComponents;
+import com.vaadin.ui.HasComponents.ComponentAttachDetachNotifier;
+import com.vaadin.ui.HasComponents.ComponentAttachEvent;
+import com.vaadin.ui.HasComponents.ComponentAttachListener;
+import com.vaadin.ui.HasComponents.ComponentDetachEvent;
+import com.vaadin.ui.HasComponents.ComponentDetachListener;
+
+import fi.jasoft.dragdroplayouts.interfaces.DragGrabFilter;
+import fi.jasoft.dragdroplayouts.interfaces.LayoutDragSource;
+
+/**
+ * Remembers the non-grabbable components in the subtree of each child of a
+ * layout so that only the subtrees which have changed are evaluated again.
+ * <p>
+ * A subtree is evaluated again when a component is attached to or detached
+ * from a container inside it, when the grab filter of the layout is changed
+ * or when the subtrees are invalidated. Subtrees containing containers which
+ * do not notify about their attached and detached components, like custom
+ * components, are evaluated every time.
+ */
+@SuppressWarnings("serial")
+public class NonGrabbableTracker implements Serializable {
+
+    private final DDLayoutStateTracker owner;
+
+    // The filter the remembered subtrees were evaluated with
+    private DragGrabFilter filter;
+
+    private final Map<Component, Subtree> subtrees = new HashMap<>();
+
+    /**
+     * The non-grabbable components under a single child of the layout
+     */
+    private class Subtree
+            implements ComponentAttachListener, ComponentDetachListener {
+
+        private final List<Connector> nonGrabbable = new ArrayList<>();
+
+        private final List<Registration> registrations = new ArrayList<>();
+
+        private boolean dirty = true;
+
+        // Do all containers of the subtree notify about their changes
+        private boolean watched;
+
+        void evaluate(Component component) {
+            release();
+            watched = true;
+            addNonGrabbedComponents(component);
+            dirty = false;
+        }
+
+        void release() {
+            for (Registration registration : registrations) {
+                registration.remove();
+            }
+            registrations.clear();
+            nonGrabbable.clear();
+        }
+
+        private void addNonGrabbedComponents(Component component) {
+            if (!filter.canBeGrabbed(component)) {
+                nonGrabbable.add(component);
+            } else if (component instanceof HasComponents
+                    && !(component instanceof LayoutDragSource)) {
+                if (component instanceof ComponentAttachDetachNotifier) {
+                    ComponentAttachDetachNotifier notifier = (ComponentAttachDetachNotifier) component;
+                    registrations
+                            .add(notifier.addComponentAttachListener(this));
+                    registrations
+                            .add(notifier.addComponentDetachListener(this));
+                } else {
+                    watched = false;
+                }
+                for (Component child : ((HasComponents) component)) {
+                    addNonGrabbedComponents(child);
+                }
+            }
+        }
+
+        @Override
+        public void componentAttachedToContainer(ComponentAttachEvent event) {
+            markDirty();
+        }
+
+        @Override
+        public void componentDetachedFromContainer(
+                ComponentDetachEvent event) {
+            markDirty();
+        }
+
+        private void markDirty() {
+            if (!dirty) {
+                dirty = true;
+                owner.markSubtreeDirty();
+            }
+        }
+    }
+
+    /**
+     * Creates a tracker which marks the state of its owner dirty when a
+     * subtree changes
+     *
+     * @param owner
+     *            The state tracker of the layout
+     */
+    public NonGrabbableTracker(DDLayoutStateTracker owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Adds the non-grabbable components under a child of the layout,
+     * including the child itself, to a list. Only evaluates the filter if the
+     * subtree has changed since it was last evaluated or cannot be watched
+     * for changes.
+     *
+     * @param nonGrabbable
+     *            The list to add the components to
+     * @param child
+     *            A child of the layout
+     * @param filter
+     *            The grab filter of the layout
+     */
+    public void addNonGrabbedComponents(List<Connector> nonGrabbable,
+            Component child, DragGrabFilter filter) {
+        if (filter != this.filter) {
+            clear();
+            this.filter = filter;
+        }
+
+        Subtree subtree = subtrees.get(child);
+        if (subtree == null) {
+            subtree = new Subtree();
+            subtrees.put(child, subtree);
+        }
+        if (subtree.dirty || !subtree.watched) {
+            subtree.evaluate(child);
+        }
+        nonGrabbable.addAll(subtree.nonGrabbable);
+    }
+
+    /**
+     * Forgets the subtree of a child which was removed from the layout
+     *
+     * @param child
+     *            The removed child
+     */
+    public void remove(Component child) {
+        Subtree subtree = subtrees.remove(child);
+        if (subtree != null) {
+            subtree.release();
+        }
+    }
+
+    /**
+     * Evaluates every subtree again the next time its non-grabbable components
+     * are requested, for grab filters which depend on something else than the
+     * component hierarchy
+     */
+    public void invalidate() {
+        for (Subtree subtree : subtrees.values()) {
+            subtree.dirty = true;
+        }
+    }
+
+    /**
+     * Forgets all subtrees
+     */
+    public void clear() {
+        for (Subtree subtree : subtrees.values()) {
+            subtree.release();
+        }
+        subtrees.clear();
+        filter = null;
+    }
+}
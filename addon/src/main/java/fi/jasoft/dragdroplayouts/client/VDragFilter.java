@@ -15,25 +15,102 @@ package fi.jasoft.dragdroplayouts.client;
 
 import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ComponentConnector;
+import com.vaadin.client.ServerConnector;
 import com.vaadin.client.Util;
 import com.vaadin.client.VCaption;
 import com.vaadin.client.ui.VAccordion.StackItem;
+import com.vaadin.shared.Connector;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutState;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class VDragFilter {
 
-    private final DDLayoutState state;
+    private DDLayoutState state;
+
+    private final ServerConnector layout;
+
+    // Index of the draggable connector ids for constant time lookups
+    private final Set<String> draggableIds = new HashSet<>();
+
+    // Index of the non-draggable children when the compact form is used
+    private final Set<String> nonDraggableIds = new HashSet<>();
+
+    // The connectors the indexes were built from
+    private List<Connector> indexedConnectors;
+    private boolean indexedByDefault;
 
     public VDragFilter(DDLayoutState state) {
+        this(state, null);
+    }
+
+    /**
+     * Creates a drag filter for a layout
+     * 
+     * @param state
+     *            The drag and drop state of the layout
+     * @param layout
+     *            The layout connector, used to ensure only children are
+     *            draggable when the state uses the compact draggableByDefault
+     *            form
+     */
+    public VDragFilter(DDLayoutState state, ServerConnector layout) {
+        this.layout = layout;
+        update(state);
+    }
+
+    /**
+     * Updates the filter from a changed drag and drop state. The connector id
+     * index is only rebuilt if the draggable components have changed.
+     * 
+     * @param state
+     *            The drag and drop state of the layout
+     */
+    public void update(DDLayoutState state) {
         this.state = state;
+
+        List<Connector> connectors = state.draggableByDefault
+                ? state.nonDraggable : state.draggable;
+        if (connectors == null) {
+            connectors = Collections.emptyList();
+        }
+        if (indexedConnectors != null
+                && indexedByDefault == state.draggableByDefault
+                && indexedConnectors.equals(connectors)) {
+            return;
+        }
+
+        draggableIds.clear();
+        nonDraggableIds.clear();
+        addConnectorIds(connectors,
+                state.draggableByDefault ? nonDraggableIds : draggableIds);
+        indexedByDefault = state.draggableByDefault;
+        indexedConnectors = new ArrayList<>(connectors);
+    }
+
+    private static void addConnectorIds(List<Connector> connectors,
+            Set<String> ids) {
+        for (Connector connector : connectors) {
+            if (connector != null) {
+                ids.add(connector.getConnectorId());
+            }
+        }
     }
 
     public boolean isDraggable(Widget widget) {
         ComponentConnector component = findConnectorFor(widget);
-        if (state.draggable != null) {
-            return state.draggable.contains(component);
+        if (component == null) {
+            return false;
+        }
+        if (state.draggableByDefault) {
+            return (layout == null || component.getParent() == layout)
+                    && !nonDraggableIds.contains(component.getConnectorId());
         }
-        return false;
+        return draggableIds.contains(component.getConnectorId());
     }
 
     private ComponentConnector findConnectorFor(Widget widget) {
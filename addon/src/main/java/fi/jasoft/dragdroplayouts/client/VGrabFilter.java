@@ -18,17 +18,58 @@ import com.vaadin.client.ComponentConnector;
 import com.vaadin.client.Util;
 import com.vaadin.client.VCaption;
 import com.vaadin.client.ui.VAccordion;
+import com.vaadin.shared.Connector;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutState;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class VGrabFilter {
-    protected final DDLayoutState state;
+    protected DDLayoutState state;
+
+    // Index of the non-grabbable connector ids for constant time lookups
+    protected final Set<String> nonGrabbableIds = new HashSet<>();
+
+    // The connectors the index was built from
+    private List<Connector> indexedConnectors;
 
     public VGrabFilter(DDLayoutState state) {
+        update(state);
+    }
+
+    /**
+     * Updates the filter from a changed drag and drop state. The connector id
+     * index is only rebuilt if the non-grabbable components have changed.
+     * 
+     * @param state
+     *            The drag and drop state of the layout
+     */
+    public void update(DDLayoutState state) {
         this.state = state;
+
+        List<Connector> connectors = state.nonGrabbable;
+        if (connectors == null) {
+            connectors = Collections.emptyList();
+        }
+        if (indexedConnectors != null
+                && indexedConnectors.equals(connectors)) {
+            return;
+        }
+
+        nonGrabbableIds.clear();
+        for (Connector connector : connectors) {
+            if (connector != null) {
+                nonGrabbableIds.add(connector.getConnectorId());
+            }
+        }
+        indexedConnectors = new ArrayList<>(connectors);
     }
 
     public boolean canBeGrabbed(Widget root, Widget widget) {
-        if (state.nonGrabbable != null) {
+        if (!nonGrabbableIds.isEmpty()) {
             return canBeGrabbedRecursive(root, widget);
         }
         return true;
@@ -46,7 +87,8 @@ public class VGrabFilter {
             connector = findConnectorForAccordionCaption(widget);
         }
 
-        if (connector != null && state.nonGrabbable.contains(connector)) {
+        if (connector != null
+                && nonGrabbableIds.contains(connector.getConnectorId())) {
             return false;
         }
 
@@ -47,4 +47,5 @@ public interface Constants {
     public static final String ATTRIBUTE_HORIZONTAL_DROP_RATIO = "hDropRatio";
     public static final String ATTRIBUTE_VERTICAL_DROP_RATIO = "vDropRatio";
     public static final String DRAGMODE_ATTRIBUTE = "dragMode";
+    public static final String ACCEPT_CRITERION_FINGERPRINT_ATTRIBUTE = "acFingerprint";
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 John Ahlroos
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.client.ui;
+
+/**
+ * DragProxyMode specifies what is shown next to the pointer while a
+ * component is dragged.
+ * 
+ * @author John Ahlroos / www.jasoft.fi
+ */
+public enum DragProxyMode {
+
+    /**
+     * Shows a copy of the whole component. This is the default behaviour.
+     */
+    CLONE,
+
+    /**
+     * Shows an outline box of the same size as the component. The component
+     * is not copied at all, which makes starting the drag of large components
+     * fast.
+     */
+    OUTLINE,
+
+    /**
+     * Shows only the caption of the component. Shows an outline if the
+     * component does not have a caption.
+     */
+    CAPTION,
+
+    /**
+     * Shows a copy of the component limited to a maximum number of DOM nodes.
+     * The rest of the nodes are left out of the copy.
+     */
+    LIMITED_CLONE
+
+    ;
+}
@@ -16,6 +16,7 @@ package fi.jasoft.dragdroplayouts.client.ui;
 import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ApplicationConnection;
 import com.vaadin.client.ComponentConnector;
+import com.vaadin.client.UIDL;
 import com.vaadin.client.ui.dd.VAbstractDropHandler;
 import com.vaadin.client.ui.dd.VDragEvent;
 
@@ -24,6 +25,9 @@ public abstract class VDDAbstractDropHandler<W extends Widget>
 
     private final ComponentConnector connector;
 
+    // Fingerprint of the accept criterion the rules were last updated from
+    private int acceptCriterionFingerprint = -1;
+
     public VDDAbstractDropHandler(ComponentConnector connector) {
         this.connector = connector;
     }
@@ -37,6 +41,57 @@ public abstract class VDDAbstractDropHandler<W extends Widget>
         dragLeave(drag);
     }
 
+    /**
+     * Defers a drag over event so that drag overs are processed at most once
+     * per animation frame. Should be called at the beginning of dragOver():
+     * 
+     * <pre>
+     * if (deferDragOver(drag)) {
+     *     return;
+     * }
+     * </pre>
+     * 
+     * @param drag
+     *            The drag event
+     * @return true if dragOver() will be called again on the next animation
+     *         frame and the event should not be processed now
+     */
+    protected boolean deferDragOver(VDragEvent drag) {
+        return VDragOverScheduler.get().defer(this, drag);
+    }
+
+    /**
+     * Cancels the deferred drag over event of this handler, if any. Should be
+     * called at the beginning of dragLeave() and drop() so that a deferred
+     * drag over does not emphasize the layout after the drag has left it.
+     */
+    protected void cancelDragOver() {
+        VDragOverScheduler.get().cancel(this);
+    }
+
+    /**
+     * Updates the accept rules unless the painted accept criterion has the
+     * same fingerprint as the criterion the rules were last updated from.
+     * 
+     * @param acceptCriterion
+     *            The painted accept criterion
+     * @param fingerprint
+     *            The fingerprint of the accept criterion or -1 if it does not
+     *            have one
+     */
+    public void updateAcceptRules(UIDL acceptCriterion, int fingerprint) {
+        if (fingerprint != -1 && fingerprint == acceptCriterionFingerprint) {
+            return;
+        }
+        if (!acceptCriterion.hasAttribute("name")) {
+            // Unchanged criterion which this handler has not seen, keep the
+            // current rules
+            return;
+        }
+        updateAcceptRules(acceptCriterion);
+        acceptCriterionFingerprint = fingerprint;
+    }
+
     @Override
     protected void dragAccepted(VDragEvent drag) {
         // NOP
@@ -4,17 +4,90 @@ import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.user.client.DOM;
 import com.vaadin.client.ComponentConnector;
+import com.vaadin.client.HasComponentsConnector;
 import com.vaadin.client.WidgetUtil;
 import com.vaadin.client.ui.orderedlayout.Slot;
+import com.vaadin.client.ui.dd.VDragEvent;
 import com.vaadin.client.ui.orderedlayout.VAbstractOrderedLayout;
 
+import fi.jasoft.dragdroplayouts.client.ui.util.SlotGeometry;
+
 public abstract class VDDAbstractOrderedLayoutDropHandler<W extends VAbstractOrderedLayout>
         extends VDDAbstractDropHandler<W> {
 
+    // Slot positions measured while dragging over the layout
+    private SlotGeometry slotGeometry;
+
+    private boolean slotGeometryEnabled = true;
+
     public VDDAbstractOrderedLayoutDropHandler(ComponentConnector connector) {
         super(connector);
     }
 
+    @Override
+    public void dragEnter(VDragEvent drag) {
+        // Measure the slots again when a drag enters the layout
+        if (slotGeometryEnabled) {
+            getSlotGeometry().invalidate();
+        }
+        super.dragEnter(drag);
+    }
+
+    /**
+     * Should slots be hit tested against their measured positions. Disable
+     * for layouts which positions cannot be measured in advance, for instance
+     * when the slots are moved with CSS transforms. The slots are then found
+     * by probing the elements under the pointer.
+     * 
+     * @param enabled
+     *            true to use measured positions (default), false to probe the
+     *            DOM on every drag over event
+     */
+    public void setSlotGeometryEnabled(boolean enabled) {
+        slotGeometryEnabled = enabled;
+    }
+
+    /**
+     * Are slots hit tested against their measured positions
+     */
+    public boolean isSlotGeometryEnabled() {
+        return slotGeometryEnabled;
+    }
+
+    /**
+     * Returns the slot positions of the layout. Used for hit testing without
+     * reading the positions from the DOM on every drag over event.
+     * 
+     * @return The slot positions or null if they are not used
+     */
+    public SlotGeometry getSlotGeometry() {
+        if (!slotGeometryEnabled) {
+            return null;
+        }
+        if (slotGeometry == null) {
+            slotGeometry = new SlotGeometry(getLayout(),
+                    (HasComponentsConnector) getConnector());
+        }
+        return slotGeometry;
+    }
+
+    /**
+     * Finds the slot under the pointer from the measured slot positions
+     * 
+     * @param event
+     *            The drag event
+     * @return The slot under the pointer or null if the pointer is not over a
+     *         slot
+     */
+    protected Slot findSlotAtPointer(NativeEvent event) {
+        if (!slotGeometryEnabled) {
+            return null;
+        }
+        return getSlotGeometry().findSlot(
+                WidgetUtil.getTouchOrMouseClientX(event),
+                WidgetUtil.getTouchOrMouseClientY(event));
+    }
+
     protected abstract Slot getSlot(Element e, NativeEvent event);
 
     protected Slot findSlotAtPosition(int clientX, int clientY,
@@ -28,6 +101,11 @@ public abstract class VDDAbstractOrderedLayoutDropHandler<W extends VAbstractOrd
     }
 
     protected Slot findSlotHorizontally(int spacerSize, NativeEvent event) {
+        if (slotGeometryEnabled) {
+            return getSlotGeometry().findNearestSlot(event.getClientX(),
+                    event.getClientY(), spacerSize);
+        }
+
         int counter = 0;
         Slot slotLeft, slotRight;
         int clientX = event.getClientX();
@@ -47,6 +125,11 @@ public abstract class VDDAbstractOrderedLayoutDropHandler<W extends VAbstractOrd
     }
 
     protected Slot findSlotVertically(int spacerSize, NativeEvent event) {
+        if (slotGeometryEnabled) {
+            return getSlotGeometry().findNearestSlot(event.getClientX(),
+                    event.getClientY(), spacerSize);
+        }
+
         int counter = 0;
         Slot slotTop, slotBottom;
         int clientX = event.getClientX();
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 John Ahlroos
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.client.ui;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.dom.client.Style;
+import com.google.gwt.dom.client.Style.Unit;
+import com.vaadin.client.WidgetUtil;
+import com.vaadin.client.ui.dd.VDragAndDropManager;
+
+import fi.jasoft.dragdroplayouts.client.ui.util.IframeCoverUtility;
+
+/**
+ * Drag and drop manager which can move the drag image with a CSS transform
+ * instead of its position. Changing the transform of an element on its own
+ * compositing layer does not make the browser lay out the page again.
+ * <p>
+ * Only drag images with the {@link #TRANSFORMED_DRAG_IMAGE_STYLENAME} style
+ * name are moved with a transform. When the drag ends the position of the
+ * drag image is set from the transform again.
+ * <p>
+ * The manager also removes the iframe shield of drag scoped iframe shims when
+ * the drag ends.
+ * <p>
+ * Replaces {@link VDragAndDropManager} in the widgetset.
+ */
+public class VDDDragAndDropManager extends VDragAndDropManager {
+
+    /**
+     * Style name of drag images which are moved with a CSS transform
+     */
+    public static final String TRANSFORMED_DRAG_IMAGE_STYLENAME = "v-dd-transformed-drag-image";
+
+    // The drag image currently moved with a transform
+    private Element transformed;
+
+    // The latest position of the transformed drag image
+    private int transformedLeft;
+    private int transformedTop;
+
+    public VDDDragAndDropManager() {
+        super();
+    }
+
+    @Override
+    protected void updateDragImagePosition(NativeEvent gwtEvent,
+            Element dragImage) {
+        if (gwtEvent == null || dragImage == null
+                || !dragImage.hasClassName(TRANSFORMED_DRAG_IMAGE_STYLENAME)) {
+            super.updateDragImagePosition(gwtEvent, dragImage);
+            return;
+        }
+
+        Style style = dragImage.getStyle();
+        if (transformed != dragImage) {
+            syncPosition();
+
+            // Position the image once, after that only the transform changes
+            style.setTop(0, Unit.PX);
+            style.setLeft(0, Unit.PX);
+            style.setProperty("willChange", "transform");
+            transformed = dragImage;
+        }
+
+        transformedLeft = WidgetUtil.getTouchOrMouseClientX(gwtEvent);
+        transformedTop = WidgetUtil.getTouchOrMouseClientY(gwtEvent);
+        style.setProperty("transform", "translate3d(" + transformedLeft
+                + "px," + transformedTop + "px,0)");
+    }
+
+    @Override
+    public void endDrag() {
+        syncPosition();
+        IframeCoverUtility.setDragShieldEnabled(false);
+        super.endDrag();
+    }
+
+    @Override
+    public void interruptDrag() {
+        syncPosition();
+        IframeCoverUtility.setDragShieldEnabled(false);
+        super.interruptDrag();
+    }
+
+    /*
+     * Moves the transformed drag image back to its position, so that the
+     * position of the drag image is correct when the drop is handled
+     */
+    private void syncPosition() {
+        if (transformed != null) {
+            Style style = transformed.getStyle();
+            style.clearProperty("transform");
+            style.clearProperty("willChange");
+            style.setTop(transformedTop, Unit.PX);
+            style.setLeft(transformedLeft, Unit.PX);
+            transformed = null;
+        }
+    }
+}
@@ -1,34 +1,166 @@
 package fi.jasoft.dragdroplayouts.client.ui;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ComponentConnector;
 import com.vaadin.client.ConnectorMap;
 import com.vaadin.client.Util;
+import com.vaadin.client.communication.RpcProxy;
+import com.vaadin.client.ui.AbstractConnector;
 import com.vaadin.shared.Connector;
 
+import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutServerRpc;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutState;
+import fi.jasoft.dragdroplayouts.client.ui.interfaces.DragAndDropAwareState;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.VDragImageProvider;
 
 public class VDDLayoutStateDragImageProvider implements VDragImageProvider {
 
+    // How many lazily resolved drag images are remembered
+    private static final int RECENT_DRAG_IMAGES = 16;
+
+    private final AbstractConnector root;
+
     private final DDLayoutState state;
 
+    // Lazily resolved drag images by connector id, least recently used first
+    private final Map<String, Connector> recentDragImages = new LinkedHashMap<String, Connector>(
+            RECENT_DRAG_IMAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, Connector> eldest) {
+            return size() > RECENT_DRAG_IMAGES;
+        }
+    };
+
+    // Connector ids of drag images requested from the server
+    private final Set<String> pendingDragImages = new HashSet<>();
+
+    // Executed when the drag image of the latest drag has been resolved
+    private Command pendingDragCommand;
+    private String pendingDragId;
+
+    private int dragImageRevision;
+
     public VDDLayoutStateDragImageProvider(DDLayoutState state) {
+        this.root = null;
         this.state = state;
     }
 
+    /**
+     * Creates a drag image provider which can also resolve the drag images
+     * lazily from the server of the given layout connector
+     */
+    public VDDLayoutStateDragImageProvider(AbstractConnector root) {
+        this.root = root;
+        this.state = ((DragAndDropAwareState) root.getState())
+                .getDragAndDropState();
+        this.dragImageRevision = state.dragImageRevision;
+    }
+
     @Override
     public Element getDragImageElement(Widget w) {
         ComponentConnector component = Util.findConnectorFor(w);
-        Connector dragImage = state.referenceImageComponents.get(component);
+        if (component == null) {
+            return null;
+        }
+
+        Connector dragImage;
+        if (isLazy()) {
+            String id = component.getConnectorId();
+            if (!recentDragImages.containsKey(id)) {
+                requestDragImage(id, component);
+                return null;
+            }
+            dragImage = recentDragImages.get(id);
+        } else {
+            dragImage = state.referenceImageComponents.get(component);
+        }
+
+        return getElement(component, dragImage);
+    }
+
+    /**
+     * Remembers the lazily resolved drag images the server has answered.
+     * Should be called when the drag and drop state changes.
+     */
+    public void updateDragImages() {
+        if (!isLazy()) {
+            return;
+        }
+
+        if (dragImageRevision != state.dragImageRevision) {
+            dragImageRevision = state.dragImageRevision;
+            recentDragImages.clear();
+        }
+
+        for (Map.Entry<Connector, Connector> answer : state.referenceImageComponents
+                .entrySet()) {
+            String id = answer.getKey().getConnectorId();
+            if (pendingDragImages.contains(id)) {
+                recentDragImages.put(id, answer.getValue());
+            }
+        }
+
+        // Unanswered requests are requested again on the next drag
+        pendingDragImages.clear();
+
+        if (pendingDragCommand != null) {
+            Command command = pendingDragCommand;
+            String id = pendingDragId;
+            pendingDragCommand = null;
+            pendingDragId = null;
+            if (recentDragImages.containsKey(id)) {
+                command.execute();
+            }
+        }
+    }
+
+    /**
+     * Executes a command once the server has answered the lazily requested
+     * drag image of a widget. Only the command of the latest drag is kept.
+     * 
+     * @param w
+     *            The dragged widget
+     * @param command
+     *            The command to execute
+     * @return true if the drag image was requested and the command will be
+     *         executed, false if the drag image is already known
+     */
+    public boolean whenDragImageResolved(Widget w, Command command) {
+        ComponentConnector component = Util.findConnectorFor(w);
+        if (component == null || !pendingDragImages
+                .contains(component.getConnectorId())) {
+            return false;
+        }
+        pendingDragId = component.getConnectorId();
+        pendingDragCommand = command;
+        return true;
+    }
 
-        if (dragImage != null) {
-            return ConnectorMap.get(component.getConnection())
-                    .getElement(dragImage.getConnectorId());
+    private void requestDragImage(String id, ComponentConnector component) {
+        if (pendingDragImages.add(id)) {
+            RpcProxy.create(DDLayoutServerRpc.class, root)
+                    .requestDragImage(component);
         }
+    }
 
-        return null;
+    private boolean isLazy() {
+        return root != null && state.lazyDragImages;
     }
 
+    private static Element getElement(ComponentConnector component,
+            Connector dragImage) {
+        if (component == null || dragImage == null) {
+            return null;
+        }
+        return ConnectorMap.get(component.getConnection())
+                .getElement(dragImage.getConnectorId());
+    }
 }
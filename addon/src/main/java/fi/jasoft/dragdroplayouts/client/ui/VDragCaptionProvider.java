@@ -18,28 +18,180 @@ import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.PreElement;
 import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ComponentConnector;
+import com.vaadin.client.ConnectorMap;
+import com.vaadin.client.ServerConnector;
 import com.vaadin.client.Util;
+import com.vaadin.client.communication.RpcProxy;
 import com.vaadin.client.ui.AbstractConnector;
 import com.vaadin.client.ui.Icon;
 import com.vaadin.shared.ui.ContentMode;
+import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutServerRpc;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutState;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.DragAndDropAwareState;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
 public class VDragCaptionProvider {
     private final AbstractConnector root;
 
+    // Placeholders of lazy drag captions waiting for the server, by connector id
+    private final Map<String, Element> pendingCaptions = new HashMap<>();
+
+    // Rendered drag captions by connector id, reused between drags
+    private final Map<String, RenderedCaption> renderedCaptions = new HashMap<>();
+
+    /**
+     * A drag caption element and the caption it was rendered from
+     */
+    private static class RenderedCaption {
+        private final Element element = Document.get().createDivElement();
+        private Element icon;
+        private Element caption;
+
+        private String text;
+        private ContentMode contentMode;
+        private String iconUrl;
+
+        boolean isRenderedFrom(DragCaptionInfo dci, String iconUrl) {
+            return equals(text, dci.caption)
+                    && contentMode == dci.contentMode
+                    && equals(this.iconUrl, iconUrl);
+        }
+
+        /*
+         * Undoes the changes made to the element during the previous drag
+         */
+        Element reset() {
+            element.removeAttribute("style");
+            element.setClassName("");
+            element.removeAllChildren();
+            if (icon != null) {
+                element.appendChild(icon);
+            }
+            element.appendChild(caption);
+            return element;
+        }
+
+        private static boolean equals(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
     public VDragCaptionProvider(AbstractConnector root) {
         this.root = root;
     }
 
+    /**
+     * Returns the drag caption element for a widget or null if the widget
+     * does not have a drag caption.
+     * <p>
+     * When drag captions are lazy and the caption is not yet known an empty
+     * placeholder is returned and the caption is requested from the server.
+     * The placeholder is filled by {@link #updatePendingCaptions()} once the
+     * server has answered.
+     */
     public Element getDragCaptionElement(Widget w) {
         ComponentConnector component = Util.findConnectorFor(w);
-        DDLayoutState state = ((DragAndDropAwareState) root.getState()).getDragAndDropState();
+        if (component == null) {
+            return null;
+        }
+
+        DDLayoutState state = getDragAndDropState();
         DragCaptionInfo dci = state.dragCaptions.get(component);
 
+        if (dci == null) {
+            if (state.lazyDragCaptions) {
+                return requestDragCaption(component);
+            }
+            return null;
+        }
+
+        if (state.lazyDragCaptions && isEmpty(dci)) {
+            // The server has no caption for the component
+            return null;
+        }
+
+        String id = component.getConnectorId();
+        String iconUrl = getIconUrl(dci);
+        RenderedCaption rendered = renderedCaptions.get(id);
+        if (rendered == null || !rendered.isRenderedFrom(dci, iconUrl)) {
+            rendered = new RenderedCaption();
+            buildDragCaption(rendered, component, dci, iconUrl);
+            renderedCaptions.put(id, rendered);
+        }
+        return rendered.reset();
+    }
+
+    /**
+     * Fills the placeholders of lazy drag captions which the server has
+     * answered and forgets the rendered captions of components which no
+     * longer have a drag caption. Should be called when the drag and drop
+     * state changes.
+     */
+    public void updatePendingCaptions() {
+        DDLayoutState state = getDragAndDropState();
+
+        Iterator<String> ids = renderedCaptions.keySet().iterator();
+        while (ids.hasNext()) {
+            ServerConnector component = ConnectorMap.get(root.getConnection())
+                    .getConnector(ids.next());
+            if (component == null
+                    || !state.dragCaptions.containsKey(component)) {
+                ids.remove();
+            }
+        }
+
+        if (pendingCaptions.isEmpty()) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, Element>> pending = pendingCaptions
+                .entrySet().iterator();
+        while (pending.hasNext()) {
+            Map.Entry<String, Element> entry = pending.next();
+            ServerConnector component = ConnectorMap
+                    .get(root.getConnection()).getConnector(entry.getKey());
+            if (!(component instanceof ComponentConnector)) {
+                pending.remove();
+                continue;
+            }
+
+            DragCaptionInfo dci = state.dragCaptions.get(component);
+            if (dci != null) {
+                RenderedCaption rendered = new RenderedCaption();
+                buildDragCaption(rendered, (ComponentConnector) component, dci,
+                        getIconUrl(dci));
+                renderedCaptions.put(entry.getKey(), rendered);
+
+                // The placeholder may still be shown by the current drag
+                Element placeholder = entry.getValue();
+                if (rendered.icon != null) {
+                    placeholder.appendChild(rendered.icon.cloneNode(true));
+                }
+                placeholder.appendChild(rendered.caption.cloneNode(true));
+                pending.remove();
+            }
+        }
+    }
+
+    private Element requestDragCaption(ComponentConnector component) {
+        Element placeholder = pendingCaptions.get(component.getConnectorId());
+        if (placeholder == null) {
+            placeholder = Document.get().createDivElement();
+            pendingCaptions.put(component.getConnectorId(), placeholder);
+            RpcProxy.create(DDLayoutServerRpc.class, root)
+                    .requestDragCaption(component);
+        }
+        return placeholder;
+    }
+
+    private void buildDragCaption(RenderedCaption rendered,
+            ComponentConnector component, DragCaptionInfo dci,
+            String iconUrl) {
         Document document = Document.get();
 
-        Element dragCaptionImage = document.createDivElement();
         Element dragCaption = document.createSpanElement();
 
         String dragCaptionText = dci.caption;
@@ -55,15 +207,26 @@ public class VDragCaptionProvider {
             }
         }
 
-        String dragIconKey = state.dragCaptions.get(component).iconKey;
-        if (dragIconKey != null) {
-            String resourceUrl = root.getResourceUrl(dragIconKey);
-            Icon icon = component.getConnection().getIcon(resourceUrl);
-            dragCaptionImage.appendChild(icon.getElement());
+        if (iconUrl != null) {
+            Icon icon = component.getConnection().getIcon(iconUrl);
+            rendered.icon = icon.getElement();
         }
 
-        dragCaptionImage.appendChild(dragCaption);
+        rendered.caption = dragCaption;
+        rendered.text = dci.caption;
+        rendered.contentMode = dci.contentMode;
+        rendered.iconUrl = iconUrl;
+    }
+
+    private String getIconUrl(DragCaptionInfo dci) {
+        return dci.iconKey == null ? null : root.getResourceUrl(dci.iconKey);
+    }
+
+    private static boolean isEmpty(DragCaptionInfo dci) {
+        return dci.caption == null && dci.iconKey == null;
+    }
 
-        return dragCaptionImage;
+    private DDLayoutState getDragAndDropState() {
+        return ((DragAndDropAwareState) root.getState()).getDragAndDropState();
     }
-}
\ No newline at end of file
+}
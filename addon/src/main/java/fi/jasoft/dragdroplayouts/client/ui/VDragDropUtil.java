@@ -13,12 +13,23 @@
  */
 package fi.jasoft.dragdroplayouts.client.ui;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.event.logical.shared.AttachEvent;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.ui.Widget;
 import com.google.gwt.user.client.ui.WidgetCollection;
 import com.vaadin.client.*;
+import com.vaadin.client.ConnectorHierarchyChangeEvent.ConnectorHierarchyChangeHandler;
 import com.vaadin.client.communication.StateChangeEvent;
 import com.vaadin.client.communication.StateChangeEvent.StateChangeHandler;
 import com.vaadin.client.ui.*;
@@ -48,6 +59,91 @@ import fi.jasoft.dragdroplayouts.client.ui.tabsheet.VDDTabSheet;
  */
 public final class VDragDropUtil {
 
+    /*
+     * Drag sources resolved for grabbed widgets, by the connector of the root
+     * layout
+     */
+    private static final Map<ComponentConnector, ResolvedDragSources> resolvedDragSources = new HashMap<ComponentConnector, ResolvedDragSources>();
+
+    /*
+     * The component which is dragged when a widget is grabbed and the layout
+     * it is dragged from
+     */
+    private static class ResolvedDragSource {
+
+        final Widget target;
+
+        final ComponentConnector widgetConnector;
+
+        final ComponentConnector layoutConnector;
+
+        ResolvedDragSource(Widget target, ComponentConnector widgetConnector,
+                ComponentConnector layoutConnector) {
+            this.target = target;
+            this.widgetConnector = widgetConnector;
+            this.layoutConnector = layoutConnector;
+        }
+    }
+
+    /*
+     * The drag sources resolved by a root layout. Forgotten when the state or
+     * the children of a connector between a grabbed widget and the root
+     * change, or when the root is detached.
+     */
+    private static class ResolvedDragSources
+            implements StateChangeHandler, ConnectorHierarchyChangeHandler,
+            AttachEvent.Handler {
+
+        final ComponentConnector root;
+
+        final Map<Widget, ResolvedDragSource> sources = new HashMap<Widget, ResolvedDragSource>();
+
+        final Set<ServerConnector> watched = new HashSet<ServerConnector>();
+
+        final List<HandlerRegistration> registrations = new ArrayList<HandlerRegistration>();
+
+        ResolvedDragSources(ComponentConnector root) {
+            this.root = root;
+            registrations.add(root.getWidget().addAttachHandler(this));
+        }
+
+        void watch(ServerConnector connector) {
+            if (watched.add(connector)) {
+                registrations.add(connector.addStateChangeHandler(this));
+                if (connector instanceof HasComponentsConnector) {
+                    registrations.add(((HasComponentsConnector) connector)
+                            .addConnectorHierarchyChangeHandler(this));
+                }
+            }
+        }
+
+        void invalidate() {
+            for (HandlerRegistration registration : registrations) {
+                registration.removeHandler();
+            }
+            registrations.clear();
+            resolvedDragSources.remove(root);
+        }
+
+        @Override
+        public void onStateChanged(StateChangeEvent stateChangeEvent) {
+            invalidate();
+        }
+
+        @Override
+        public void onConnectorHierarchyChange(
+                ConnectorHierarchyChangeEvent connectorHierarchyChangeEvent) {
+            invalidate();
+        }
+
+        @Override
+        public void onAttachOrDetach(AttachEvent event) {
+            if (!event.isAttached()) {
+                invalidate();
+            }
+        }
+    }
+
     private VDragDropUtil() {
         // Prevent instantiation
     }
@@ -85,9 +181,27 @@ public final class VDragDropUtil {
      */
     public static VerticalDropLocation getVerticalDropLocation(Element element,
             int offsetHeight, int clientY, double topBottomRatio) {
+        return getVerticalDropLocation(element.getAbsoluteTop(), offsetHeight,
+                clientY, topBottomRatio);
+    }
 
-        int absoluteTop = element.getAbsoluteTop();
-        int fromTop = clientY - absoluteTop;
+    /**
+     * Get the vertical drop location from the measured position of a cell
+     * without reading it from the DOM
+     * 
+     * @param top
+     *            The top of the cell
+     * @param offsetHeight
+     *            The height of the cell
+     * @param clientY
+     *            The client y-coordinate
+     * @param topBottomRatio
+     *            The ratio of the cell
+     * @return The location of the drop
+     */
+    public static VerticalDropLocation getVerticalDropLocation(int top,
+            int offsetHeight, int clientY, double topBottomRatio) {
+        int fromTop = clientY - top;
 
         float percentageFromTop = (fromTop / (float) offsetHeight);
         if (percentageFromTop < topBottomRatio) {
@@ -112,10 +226,27 @@ public final class VDragDropUtil {
      */
     public static HorizontalDropLocation getHorizontalDropLocation(
             Element element, int clientX, double leftRightRatio) {
+        return getHorizontalDropLocation(element.getAbsoluteLeft(),
+                element.getOffsetWidth(), clientX, leftRightRatio);
+    }
 
-        int absoluteLeft = element.getAbsoluteLeft();
-        int offsetWidth = element.getOffsetWidth();
-        int fromTop = clientX - absoluteLeft;
+    /**
+     * Get the horizontal drop location from the measured position of a cell
+     * without reading it from the DOM
+     * 
+     * @param left
+     *            The left edge of the cell
+     * @param offsetWidth
+     *            The width of the cell
+     * @param clientX
+     *            The x-coordinate of the drop
+     * @param leftRightRatio
+     *            The ratio of how the cell has been divided
+     * @return the drop location relative to the cell
+     */
+    public static HorizontalDropLocation getHorizontalDropLocation(int left,
+            int offsetWidth, int clientX, double leftRightRatio) {
+        int fromTop = clientX - left;
 
         float percentageFromTop = (fromTop / (float) offsetWidth);
         if (percentageFromTop < leftRightRatio) {
@@ -193,6 +324,26 @@ public final class VDragDropUtil {
      */
     public static VTransferable createLayoutTransferableFromMouseDown(
             NativeEvent event, Widget root, Widget target) {
+        return createLayoutTransferableFromMouseDown(event, root, target,
+                null);
+    }
+
+    /**
+     * Creates a transferable from a mouse down event. Returns null if creation
+     * was not successful.
+     * 
+     * @param event
+     *            The mouse down event
+     * @param root
+     *            The root layout from where the component is dragged
+     * @param rootGrabbed
+     *            Executed instead of dispatching the event again to the
+     *            parent layout if the root itself was grabbed, can be null
+     * @return A transferable or NULL if something failed
+     */
+    public static VTransferable createLayoutTransferableFromMouseDown(
+            NativeEvent event, Widget root, Widget target,
+            Command rootGrabbed) {
 
         // NPE check
         if (target == null) {
@@ -235,6 +386,42 @@ public final class VDragDropUtil {
             }
         }
 
+        // Resolving the drag source walks the hierarchy so remember it
+        ResolvedDragSource resolved = getResolvedDragSource(root, target);
+        if (resolved == null) {
+            resolved = resolveDragSource(root, target);
+            if (resolved == null) {
+                return null;
+            }
+            rememberResolvedDragSource(root, target, resolved);
+        }
+
+        if (root == resolved.target) {
+            if (rootGrabbed != null) {
+                rootGrabbed.execute();
+            } else {
+                /*
+                 * Dispatch event again so parent layout can handle the drag
+                 * of the root
+                 */
+                resolved.target.getElement()
+                        .dispatchEvent(createMouseDownEvent(event));
+            }
+            return null;
+        }
+
+        return createTransferable(resolved.layoutConnector,
+                resolved.widgetConnector, event);
+    }
+
+    /*
+     * Finds the component which should be dragged when a widget is grabbed
+     * and the layout the component is dragged from. Returns null if something
+     * failed.
+     */
+    private static ResolvedDragSource resolveDragSource(Widget root,
+            Widget target) {
+
         // Ensure we have the right widget
         target = getTransferableWidget(target);
 
@@ -271,20 +458,46 @@ public final class VDragDropUtil {
             VConsole.error("Target was null");
             return null;
         }
-        if (root == target) {
-            /*
-             * Dispatch event again so parent layout can handle the drag of the
-             * root
-             */
-            target.getElement().dispatchEvent(createMouseDownEvent(event));
-            return null;
-        }
-        if (layoutConnector == null) {
+        if (root != target && layoutConnector == null) {
             VConsole.error("No layout connector was found");
             return null;
         }
 
-        return createTransferable(layoutConnector, widgetConnector, event);
+        return new ResolvedDragSource(target, widgetConnector,
+                layoutConnector);
+    }
+
+    private static ResolvedDragSource getResolvedDragSource(Widget root,
+            Widget grabbed) {
+        ComponentConnector rootConnector = Util.findConnectorFor(root);
+        ResolvedDragSources resolved = rootConnector == null ? null
+                : resolvedDragSources.get(rootConnector);
+        return resolved == null ? null : resolved.sources.get(grabbed);
+    }
+
+    private static void rememberResolvedDragSource(Widget root,
+            Widget grabbed, ResolvedDragSource source) {
+        ComponentConnector rootConnector = Util.findConnectorFor(root);
+        if (rootConnector == null) {
+            return;
+        }
+
+        ResolvedDragSources resolved = resolvedDragSources.get(rootConnector);
+        if (resolved == null) {
+            resolved = new ResolvedDragSources(rootConnector);
+            resolvedDragSources.put(rootConnector, resolved);
+        }
+
+        // Watch the connectors the drag source was resolved through
+        ServerConnector connector = Util
+                .findConnectorFor(getTransferableWidget(grabbed));
+        while (connector != null && connector != rootConnector) {
+            resolved.watch(connector);
+            connector = connector.getParent();
+        }
+        resolved.watch(rootConnector);
+
+        resolved.sources.put(grabbed, source);
     }
 
     private static NativeEvent createMouseDownEvent(NativeEvent e) {
@@ -442,42 +655,81 @@ public final class VDragDropUtil {
      */
     public static void listenToStateChangeEvents(
             final AbstractConnector connector, final Widget widget) {
+        // Kept for the life of the connector as it caches lazy drag images
+        final VDDLayoutStateDragImageProvider dragImageProvider = new VDDLayoutStateDragImageProvider(
+                connector);
         connector.addStateChangeHandler("ddState", new StateChangeHandler() {
+
+            // The values last applied to the widget
+            private LayoutDragMode dragMode;
+            private boolean iframeShims;
+            private boolean iframeShimsApplied;
+
+            // Updated in place when the state changes
+            private VDragFilter dragFilter;
+            private VGrabFilter grabFilter;
+
             @Override
             public void onStateChanged(StateChangeEvent stateChangeEvent) {
                 DDLayoutState state = ((DragAndDropAwareState) connector
                         .getState()).getDragAndDropState();
 
-                if (widget instanceof VHasDragMode) {
-                    ((VHasDragMode) widget).setDragMode(state.dragMode);
+                if (widget instanceof VHasDragMode
+                        && state.dragMode != dragMode) {
+                    dragMode = state.dragMode;
+                    ((VHasDragMode) widget).setDragMode(dragMode);
                 }
 
-                if (widget instanceof VHasIframeShims) {
-                    ((VHasIframeShims) widget)
-                            .iframeShimsEnabled(state.iframeShims);
+                boolean shims = state.iframeShims
+                        && !state.dragScopedIframeShims;
+                if (widget instanceof VHasIframeShims
+                        && (!iframeShimsApplied || shims != iframeShims)) {
+                    iframeShims = shims;
+                    iframeShimsApplied = true;
+                    ((VHasIframeShims) widget).iframeShimsEnabled(shims);
                 }
 
                 if (widget instanceof VHasDragFilter) {
-                    ((VHasDragFilter) widget)
-                            .setDragFilter(new VDragFilter(state));
+                    VHasDragFilter hasFilter = (VHasDragFilter) widget;
+                    if (dragFilter == null) {
+                        dragFilter = new VDragFilter(state, connector);
+                    } else {
+                        dragFilter.update(state);
+                    }
+                    if (hasFilter.getDragFilter() != dragFilter) {
+                        hasFilter.setDragFilter(dragFilter);
+                    }
                 }
 
                 if (widget instanceof VHasGrabFilter) {
-                    ((VHasGrabFilter) widget)
-                            .setGrabFilter(new VGrabFilter(state));
+                    VHasGrabFilter hasFilter = (VHasGrabFilter) widget;
+                    if (grabFilter == null) {
+                        grabFilter = new VGrabFilter(state);
+                    } else {
+                        grabFilter.update(state);
+                    }
+                    if (hasFilter.getGrabFilter() != grabFilter) {
+                        hasFilter.setGrabFilter(grabFilter);
+                    }
                 }
 
                 if (widget instanceof VHasDragCaptionProvider) {
-                    if (state.dragCaptions.size() > 0) {
-                        ((VHasDragCaptionProvider) widget)
-                                .setDragCaptionProvider(new VDragCaptionProvider(connector));
+                    VHasDragCaptionProvider hasProvider = (VHasDragCaptionProvider) widget;
+                    if (hasProvider.getDragCaptionProvider() != null) {
+                        // The provider reads the captions from the state
+                        hasProvider.getDragCaptionProvider()
+                                .updatePendingCaptions();
+                    } else if (state.dragCaptions.size() > 0
+                            || state.lazyDragCaptions) {
+                        hasProvider.setDragCaptionProvider(
+                                new VDragCaptionProvider(connector));
                     }
                 }
 
                 if (widget instanceof VHasDragImageReferenceSupport) {
+                    dragImageProvider.updateDragImages();
                     ((VHasDragImageReferenceSupport) widget)
-                            .setDragImageProvider(
-                                    new VDDLayoutStateDragImageProvider(state));
+                            .setDragImageProvider(dragImageProvider);
                 }
             }
         });
@@ -495,7 +747,13 @@ public final class VDragDropUtil {
                 if (widget.getDropHandler() == null) {
                     widget.setDropHandler(dropHandler);
                 }
-                widget.getDropHandler().updateAcceptRules(acceptCrit);
+                int fingerprint = uidl.hasAttribute(
+                        Constants.ACCEPT_CRITERION_FINGERPRINT_ATTRIBUTE)
+                                ? uidl.getIntAttribute(
+                                        Constants.ACCEPT_CRITERION_FINGERPRINT_ATTRIBUTE)
+                                : -1;
+                widget.getDropHandler().updateAcceptRules(acceptCrit,
+                        fingerprint);
             }
         }
     }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.client.ui;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationHandle;
+import com.vaadin.client.ui.dd.VDragAndDropManager;
+import com.vaadin.client.ui.dd.VDragEvent;
+import com.vaadin.client.ui.dd.VDropHandler;
+
+/**
+ * Coalesces the drag over events of the drop handlers so that a drag over is
+ * processed at most once per animation frame, using the latest event.
+ * <p>
+ * Mice and touch screens can send move events much more often than the
+ * screen is refreshed. Drops are not deferred and always use the exact
+ * coordinates of the drop.
+ */
+public final class VDragOverScheduler {
+
+    private static VDragOverScheduler instance;
+
+    private VDropHandler pendingHandler;
+
+    private VDragEvent pendingDrag;
+
+    private AnimationHandle frame;
+
+    // Is a deferred drag over currently being processed
+    private boolean processing;
+
+    private final AnimationCallback callback = new AnimationCallback() {
+        @Override
+        public void execute(double timestamp) {
+            frame = null;
+
+            VDropHandler handler = pendingHandler;
+            VDragEvent drag = pendingDrag;
+            pendingHandler = null;
+            pendingDrag = null;
+
+            // The drag may have left the handler or ended during the frame
+            if (handler != null && handler == VDragAndDropManager.get()
+                    .getCurrentDropHandler()) {
+                processing = true;
+                try {
+                    handler.dragOver(drag);
+                } finally {
+                    processing = false;
+                }
+            }
+        }
+    };
+
+    private VDragOverScheduler() {
+        // Use get()
+    }
+
+    /**
+     * Returns the scheduler shared by all drop handlers
+     */
+    public static VDragOverScheduler get() {
+        if (instance == null) {
+            instance = new VDragOverScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Defers a drag over event to the next animation frame. Drop handlers
+     * should call this at the beginning of dragOver() and return if the event
+     * was deferred. The deferred event calls dragOver() again with the latest
+     * state of the drag.
+     * 
+     * @param handler
+     *            The drop handler the drag is over
+     * @param drag
+     *            The drag event
+     * @return true if the event was deferred and should not be processed now,
+     *         false if the deferred event is being processed
+     */
+    public boolean defer(VDropHandler handler, VDragEvent drag) {
+        if (processing) {
+            return false;
+        }
+
+        pendingHandler = handler;
+        pendingDrag = drag;
+        if (frame == null) {
+            frame = AnimationScheduler.get().requestAnimationFrame(callback);
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the deferred drag over of a drop handler, if any
+     * 
+     * @param handler
+     *            The drop handler
+     */
+    public void cancel(VDropHandler handler) {
+        if (pendingHandler == handler) {
+            pendingHandler = null;
+            pendingDrag = null;
+            if (frame != null) {
+                frame.cancel();
+                frame = null;
+            }
+        }
+    }
+}
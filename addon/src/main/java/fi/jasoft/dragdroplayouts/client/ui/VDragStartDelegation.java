@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.client.ui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.EventTarget;
+import com.google.gwt.dom.client.NativeEvent;
+
+/**
+ * Listens to mouse down and touch start events with a single listener on the
+ * document and delegates them to the drag mouse handler of the nearest
+ * layout, instead of every layout listening to the events itself.
+ * <p>
+ * When a layout itself is grabbed, the event is handed directly to the
+ * handler of the next layout outside it instead of dispatching a new mouse
+ * down event to the parent.
+ * <p>
+ * Event delegation is disabled by default. It should be enabled before any
+ * layout is attached, for instance in the entry point of the widgetset.
+ * Because the events are only handled once they reach the document,
+ * stopping their propagation no longer hides them from the ancestors of
+ * the layouts.
+ */
+public final class VDragStartDelegation {
+
+    private static VDragStartDelegation instance;
+
+    private static boolean enabled;
+
+    // Mouse handlers by the element they listen to
+    private final Map<Element, VLayoutDragDropMouseHandler> handlers = new HashMap<Element, VLayoutDragDropMouseHandler>();
+
+    private boolean listening;
+
+    private VDragStartDelegation() {
+        // Use get()
+    }
+
+    /**
+     * Returns the delegation shared by all layouts
+     */
+    public static VDragStartDelegation get() {
+        if (instance == null) {
+            instance = new VDragStartDelegation();
+        }
+        return instance;
+    }
+
+    /**
+     * Should the layouts use a single delegated listener for starting drags.
+     * Only affects layouts attached after calling this.
+     * 
+     * @param enabled
+     *            true to delegate the events, false to listen to the events
+     *            in every layout
+     */
+    public static void setEnabled(boolean enabled) {
+        VDragStartDelegation.enabled = enabled;
+    }
+
+    /**
+     * Are the events delegated from a single listener
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Delegates the events of an element to a mouse handler
+     * 
+     * @param element
+     *            The element the handler listens to
+     * @param handler
+     *            The handler
+     */
+    void register(Element element, VLayoutDragDropMouseHandler handler) {
+        handlers.put(element, handler);
+        if (!listening) {
+            listening = true;
+            addListeners();
+        }
+    }
+
+    /**
+     * Stops delegating the events of an element
+     * 
+     * @param element
+     *            The element the handler listens to
+     */
+    void unregister(Element element) {
+        handlers.remove(element);
+    }
+
+    /**
+     * Delegates an event to the handlers of the layouts containing an
+     * element, starting from the nearest one, until a handler stops the
+     * propagation of the event
+     * 
+     * @param event
+     *            The mouse down or touch start event
+     * @param target
+     *            The element the event targets
+     */
+    void delegate(NativeEvent event, Element target) {
+        if (handlers.isEmpty()) {
+            return;
+        }
+
+        Element element = target;
+        while (element != null) {
+            VLayoutDragDropMouseHandler handler = handlers.get(element);
+            if (handler != null && handler.onDelegatedEvent(event, target)) {
+                return;
+            }
+            element = element.getParentElement();
+        }
+    }
+
+    private void onEvent(NativeEvent event) {
+        EventTarget eventTarget = event.getEventTarget();
+        if (Element.is(eventTarget)) {
+            delegate(event, Element.as(eventTarget));
+        }
+    }
+
+    private native void addListeners()
+    /*-{
+        var self = this;
+        var listener = $entry(function(e) {
+            self.@fi.jasoft.dragdroplayouts.client.ui.VDragStartDelegation::onEvent(*)(e);
+        });
+        $doc.addEventListener('mousedown', listener, false);
+        $doc.addEventListener('touchstart', listener, false);
+    }-*/;
+}
@@ -13,9 +13,11 @@
  */
 package fi.jasoft.dragdroplayouts.client.ui;
 
+import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.EventTarget;
 import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.Style;
 import com.google.gwt.dom.client.Style.Position;
 import com.google.gwt.event.dom.client.MouseDownEvent;
@@ -23,9 +25,12 @@ import com.google.gwt.event.dom.client.MouseDownHandler;
 import com.google.gwt.event.dom.client.TouchStartEvent;
 import com.google.gwt.event.dom.client.TouchStartHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Event;
 import com.google.gwt.user.client.Event.NativePreviewEvent;
 import com.google.gwt.user.client.Event.NativePreviewHandler;
+import com.google.gwt.user.client.EventListener;
 import com.google.gwt.user.client.ui.ComplexPanel;
 import com.google.gwt.user.client.ui.LabelBase;
 import com.google.gwt.user.client.ui.RootPanel;
@@ -35,6 +40,7 @@ import com.vaadin.client.ui.*;
 import com.vaadin.client.ui.VAccordion.StackItem;
 import com.vaadin.client.ui.VTabsheet.Tab;
 import com.vaadin.client.ui.VTabsheet.TabCaption;
+import com.vaadin.client.ui.dd.DragImageModifier;
 import com.vaadin.client.ui.dd.VDragAndDropManager;
 import com.vaadin.client.ui.dd.VDragEvent;
 import com.vaadin.client.ui.dd.VTransferable;
@@ -42,6 +48,7 @@ import fi.jasoft.dragdroplayouts.client.VGrabFilter;
 import fi.jasoft.dragdroplayouts.client.ui.accordion.VDDAccordion;
 import fi.jasoft.dragdroplayouts.client.ui.formlayout.VDDFormLayout;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.*;
+import fi.jasoft.dragdroplayouts.client.ui.util.IframeCoverUtility;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -58,6 +65,8 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
 
     public static final String ACTIVE_DRAG_SOURCE_STYLENAME = "v-dd-active-drag-source";
     public static final String ACTIVE_DRAG_CUSTOM_IMAGE_STYLENAME = "v-dd-active-drag-custom-image";
+    public static final String DRAG_PROXY_OUTLINE_STYLENAME = "v-dd-drag-proxy-outline";
+    public static final String DRAG_PROXY_CAPTION_STYLENAME = "v-dd-drag-proxy-caption";
 
     private LayoutDragMode dragMode = LayoutDragMode.NONE;
 
@@ -79,6 +88,12 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
 
     private boolean startDragOnMove = true;
 
+    // Are the events delegated by VDragStartDelegation
+    private boolean delegated;
+
+    // Did the latest delegated event stop propagation
+    private boolean propagationStopped;
+
     /**
      * A listener to listen for drag start events
      */
@@ -108,6 +123,47 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
         this.root = root;
     }
 
+    /**
+     * Replaces the default drag image with the reference drag image once a
+     * lazily requested drag image has been resolved, if the drag is still in
+     * progress
+     */
+    private void updateDragImageWhenResolved(final VDragEvent drag,
+            final Widget w) {
+        final Widget dragged = currentDraggedWidget;
+        ((VDDLayoutStateDragImageProvider) dragImageProvider)
+                .whenDragImageResolved(w, new Command() {
+                    @Override
+                    public void execute() {
+                        if (currentDraggedWidget != dragged
+                                || drag.getDragImage() == null) {
+                            // The drag has already ended
+                            return;
+                        }
+
+                        com.google.gwt.dom.client.Element dragImageElement = dragImageProvider
+                                .getDragImageElement(w);
+                        if (dragImageElement != null) {
+                            dragImageElement.addClassName(
+                                    ACTIVE_DRAG_SOURCE_STYLENAME);
+                            drag.createDragImage(dragImageElement, true);
+
+                            Element clone = drag.getDragImage();
+                            clone.getStyle().setWidth(
+                                    dragImageElement.getOffsetWidth(),
+                                    Style.Unit.PX);
+                            clone.getStyle().setHeight(
+                                    dragImageElement.getOffsetHeight(),
+                                    Style.Unit.PX);
+                            if (isTransformDragImage()) {
+                                clone.addClassName(
+                                        VDDDragAndDropManager.TRANSFORMED_DRAG_IMAGE_STYLENAME);
+                            }
+                        }
+                    }
+                });
+    }
+
     /**
      * Is the mouse down event a valid mouse drag event, i.e. left mouse button
      * is pressed without any modifier keys
@@ -125,7 +181,8 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
     @Override
     public void onTouchStart(TouchStartEvent event) {
         NativeEvent nativeEvent = event.getNativeEvent();
-        if (isElementNode(nativeEvent) && isChildOfRoot(nativeEvent)) {
+        if (isElementNode(nativeEvent) && isChildOfRoot(
+                Element.as(nativeEvent.getEventTarget()))) {
             if (startDragOnMove) {
                 initiateDragOnMove(event.getNativeEvent());
             } else {
@@ -137,7 +194,8 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
     @Override
     public void onMouseDown(MouseDownEvent event) {
         NativeEvent nativeEvent = event.getNativeEvent();
-        if (isElementNode(nativeEvent) && isChildOfRoot(nativeEvent)) {
+        if (isElementNode(nativeEvent) && isChildOfRoot(
+                Element.as(nativeEvent.getEventTarget()))) {
             if (startDragOnMove) {
                 initiateDragOnMove(event.getNativeEvent());
             } else {
@@ -146,9 +204,32 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
         }
     }
 
-    private boolean isChildOfRoot(NativeEvent event) {
-        EventTarget eventTarget = event.getEventTarget();
-        Element targetElement = Element.as(eventTarget);
+    /**
+     * Handles a mouse down or touch start event delegated by
+     * {@link VDragStartDelegation}
+     * 
+     * @param event
+     *            The event
+     * @param targetElement
+     *            The element the event targets, the root of a nested layout
+     *            if the nested layout itself was grabbed
+     * @return true if the propagation of the event was stopped
+     */
+    boolean onDelegatedEvent(NativeEvent event, Element targetElement) {
+        if (!isChildOfRoot(targetElement)) {
+            return false;
+        }
+
+        propagationStopped = false;
+        if (startDragOnMove) {
+            initiateDragOnMove(event, targetElement);
+        } else {
+            initiateDrag(event, targetElement);
+        }
+        return propagationStopped;
+    }
+
+    private boolean isChildOfRoot(Element targetElement) {
         if (root.getElement() != targetElement
                 && root.getElement().isOrHasChild(targetElement)) {
             return true;
@@ -172,11 +253,22 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
      *            passed in here (Element.as() is safe without check here)
      */
     protected void initiateDragOnMove(final NativeEvent originalEvent) {
-        EventTarget eventTarget = originalEvent.getEventTarget();
+        initiateDragOnMove(originalEvent,
+                Element.as(originalEvent.getEventTarget()));
+    }
 
+    /**
+     * Initiates the drag only on the first move event
+     *
+     * @param originalEvent
+     *            the original Mouse Down event
+     * @param targetElement
+     *            the element which is grabbed
+     */
+    protected void initiateDragOnMove(final NativeEvent originalEvent,
+            final Element targetElement) {
         boolean stopEventPropagation = false;
 
-        Element targetElement = Element.as(eventTarget);
         Widget target = WidgetUtil.findWidget(targetElement, null);
         Widget targetParent = target.getParent();
 
@@ -219,6 +311,7 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
         }
 
         if (stopEventPropagation) {
+            propagationStopped = true;
             originalEvent.stopPropagation();
             originalEvent.preventDefault();
 
@@ -242,7 +335,7 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
                                 || type == Event.ONTOUCHMOVE) {
                             mouseDownHandlerReg.removeHandler();
                             mouseDownHandlerReg = null;
-                            initiateDrag(originalEvent);
+                            initiateDrag(originalEvent, targetElement);
                         }
                     }
                 });
@@ -263,6 +356,19 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
      * @param event
      */
     protected void initiateDrag(NativeEvent event) {
+        initiateDrag(event, Element.as(event.getEventTarget()));
+    }
+
+    /**
+     * Called when the dragging a component should be initiated
+     *
+     * @param event
+     *            The mouse down or touch start event
+     * @param targetElement
+     *            The element which is grabbed
+     */
+    protected void initiateDrag(final NativeEvent event,
+            Element targetElement) {
         // Check that dragging is enabled
         if (dragMode == LayoutDragMode.NONE) {
             return;
@@ -274,8 +380,6 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
         }
 
         // Get target widget
-        EventTarget eventTarget = event.getEventTarget();
-        Element targetElement = Element.as(eventTarget);
         Widget target = WidgetUtil.findWidget(targetElement, null);
 
         if (isEventOnScrollBar(event)) {
@@ -318,7 +422,16 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
 
         // Create the transfarable
         VTransferable transferable = VDragDropUtil
-                .createLayoutTransferableFromMouseDown(event, root, target);
+                .createLayoutTransferableFromMouseDown(event, root, target,
+                        delegated ? new Command() {
+                            @Override
+                            public void execute() {
+                                // Let the parent layout handle the drag of
+                                // the root
+                                VDragStartDelegation.get().delegate(event,
+                                        root.getElement());
+                            }
+                        } : null);
 
         // Are we trying to drag the root layout
         if (transferable == null) {
@@ -395,6 +508,15 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
         VDragEvent currentDragEvent = VDragAndDropManager.get()
                 .startDrag(transferable, event, true);
 
+        DDLayoutState ddState = getDragAndDropState();
+        final boolean dragShield = ddState != null && ddState.iframeShims
+                && ddState.dragScopedIframeShims;
+        if (dragShield) {
+            // Removed when the drag ends, by VDDDragAndDropManager or at the
+            // latest on mouse up
+            IframeCoverUtility.setDragShieldEnabled(true);
+        }
+
         /*
          * Create the drag image
          */
@@ -405,9 +527,9 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
             VDragCaptionProvider dragCaptionProvider =
                     ((VHasDragCaptionProvider) root).getDragCaptionProvider();
             if (dragCaptionProvider != null) {
-                hasDragCaption = true;
                 dragImageElement = dragCaptionProvider
                         .getDragCaptionElement(currentDraggedWidget);
+                hasDragCaption = dragImageElement != null;
             }
         }
 
@@ -466,18 +588,20 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
         }
 
         Element clone;
+        boolean lockSize = !hasDragCaption;
         if (hasDragCaption) {
             currentDragEvent.setDragImage(dragImageElement);
             clone = dragImageElement;
         } else {
-            currentDragEvent.createDragImage(dragImageElement, true);
+            lockSize = createDragProxy(currentDragEvent, event,
+                    dragImageElement, c);
             clone = currentDragEvent.getDragImage();
         }
 
         assert(clone != null);
 
         // Lock drag image dimensions
-        if (!hasDragCaption) {
+        if (lockSize) {
             clone.getStyle().setWidth(dragImageElement.getOffsetWidth(), Style.Unit.PX);
             clone.getStyle().setHeight(dragImageElement.getOffsetHeight(), Style.Unit.PX);
         }
@@ -500,6 +624,16 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
             clone.getStyle().setPosition(Position.ABSOLUTE);
         }
 
+        if (isTransformDragImage()) {
+            // Moved by VDDDragAndDropManager from the next mouse move on
+            clone.addClassName(
+                    VDDDragAndDropManager.TRANSFORMED_DRAG_IMAGE_STYLENAME);
+        }
+
+        if (!hasDragCaption && dragImageProvider instanceof VDDLayoutStateDragImageProvider) {
+            updateDragImageWhenResolved(currentDragEvent, w);
+        }
+
         currentDraggedWidget.addStyleName(ACTIVE_DRAG_SOURCE_STYLENAME);
 
         // Listen to mouse up for cleanup
@@ -529,6 +663,10 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
 
                                     currentDraggedWidget = null;
                                 }
+
+                                if (dragShield) {
+                                    removeDragShield();
+                                }
                             }
 
                             // Ensure capturing is turned off at mouse up
@@ -539,6 +677,143 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
 
     }
 
+    /*
+     * Removes the iframe shield after the drop has been handled also when the
+     * drag and drop manager has been replaced and does not remove it
+     */
+    private static void removeDragShield() {
+        Scheduler.get().scheduleFinally(new Scheduler.ScheduledCommand() {
+            @Override
+            public void execute() {
+                IframeCoverUtility.setDragShieldEnabled(false);
+            }
+        });
+    }
+
+    /**
+     * Creates the drag image according to the drag proxy mode of the layout
+     *
+     * @param drag
+     *            The drag event
+     * @param event
+     *            The event which started the drag
+     * @param element
+     *            The element which is dragged
+     * @param component
+     *            The dragged component, can be null
+     * @return true if the drag image has the same size as the element
+     */
+    private boolean createDragProxy(VDragEvent drag, NativeEvent event,
+            Element element, ComponentConnector component) {
+        DragProxyMode proxyMode = DragProxyMode.CLONE;
+        int nodeLimit = 0;
+        DDLayoutState state = getDragAndDropState();
+        if (state != null) {
+            proxyMode = state.dragProxyMode;
+            nodeLimit = state.dragProxyNodeLimit;
+        }
+
+        Element proxy;
+        boolean sameSize = true;
+        if (proxyMode == DragProxyMode.LIMITED_CLONE) {
+            int[] budget = new int[] { nodeLimit };
+            proxy = cloneLimited(element, budget).cast();
+            if (budget[0] >= 0) {
+                // Everything fit, finish the copy like
+                // VDragEvent.createDragImage() does
+                proxy.getStyle().setWidth(element.getOffsetWidth(),
+                        Style.Unit.PX);
+                proxy.getStyle().setHeight(element.getOffsetHeight(),
+                        Style.Unit.PX);
+                syncContent(element, proxy);
+            }
+        } else if (proxyMode == DragProxyMode.CAPTION
+                && getCaption(component) != null) {
+            proxy = DOM.createDiv();
+            proxy.setClassName(DRAG_PROXY_CAPTION_STYLENAME);
+            proxy.setInnerText(getCaption(component));
+            sameSize = false;
+        } else if (proxyMode != DragProxyMode.CLONE) {
+            proxy = DOM.createDiv();
+            proxy.setClassName(DRAG_PROXY_OUTLINE_STYLENAME);
+        } else {
+            drag.createDragImage(element, true);
+            return true;
+        }
+
+        // Align the proxy like VDragEvent.createDragImage() does
+        drag.setDragImage(proxy,
+                element.getAbsoluteLeft()
+                        - WidgetUtil.getTouchOrMouseClientX(event),
+                element.getAbsoluteTop()
+                        - WidgetUtil.getTouchOrMouseClientY(event));
+        return sameSize;
+    }
+
+    /*
+     * Should the drag image be moved with a CSS transform
+     */
+    private boolean isTransformDragImage() {
+        DDLayoutState state = getDragAndDropState();
+        return state != null && state.transformDragImage;
+    }
+
+    /*
+     * Returns the drag and drop state of the layout or null if the layout
+     * does not have one
+     */
+    private DDLayoutState getDragAndDropState() {
+        ComponentConnector layout = Util.findConnectorFor(root);
+        if (layout != null
+                && layout.getState() instanceof DragAndDropAwareState) {
+            return ((DragAndDropAwareState) layout.getState())
+                    .getDragAndDropState();
+        }
+        return null;
+    }
+
+    /*
+     * Copies a node and as many of its descendants as the budget allows. The
+     * budget goes negative if some nodes were left out.
+     */
+    private static Node cloneLimited(Node node, int[] budget) {
+        budget[0]--;
+        Node copy = node.cloneNode(false);
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (budget[0] <= 0) {
+                budget[0]--;
+                break;
+            }
+            copy.appendChild(cloneLimited(node.getChild(i), budget));
+        }
+        return copy;
+    }
+
+    /*
+     * Lets the widgets of a fully copied element modify their copies, e.g.
+     * to copy form field values
+     */
+    private static void syncContent(Element original, Element copy) {
+        for (int i = 0; i < original.getChildCount(); i++) {
+            Node child = original.getChild(i);
+            if (Element.is(child)) {
+                syncContent(Element.as(child), Element.as(copy.getChild(i)));
+            }
+        }
+        EventListener listener = Event.getEventListener(original);
+        if (listener instanceof DragImageModifier) {
+            ((DragImageModifier) listener).modifyDragImage(copy);
+        }
+    }
+
+    private static String getCaption(ComponentConnector component) {
+        if (component == null) {
+            return null;
+        }
+        String caption = component.getState().caption;
+        return caption == null || caption.isEmpty() ? null : caption;
+    }
+
     /*
      * Whether the event was performed on a scrollbar.
      */
@@ -617,7 +892,13 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
      * Start listening to events
      */
     private void attach() {
-        if (handlers.isEmpty()) {
+        if (VDragStartDelegation.isEnabled()) {
+            if (!delegated) {
+                delegated = true;
+                VDragStartDelegation.get().register(getListenedElement(),
+                        this);
+            }
+        } else if (handlers.isEmpty()) {
             if (attachTarget == null) {
                 handlers.add(
                         root.addDomHandler(this, MouseDownEvent.getType()));
@@ -636,12 +917,21 @@ public class VLayoutDragDropMouseHandler implements MouseDownHandler,
      * Stop listening to events
      */
     private void detach() {
+        if (delegated) {
+            delegated = false;
+            VDragStartDelegation.get().unregister(getListenedElement());
+        }
         for (HandlerRegistration reg : handlers) {
             reg.removeHandler();
         }
         handlers.clear();
     }
 
+    private Element getListenedElement() {
+        return attachTarget == null ? root.getElement()
+                : attachTarget.getElement();
+    }
+
     public Widget getAttachTarget() {
         return attachTarget;
     }
@@ -58,14 +58,10 @@ public class DDAbsoluteLayoutConnector extends AbsoluteLayoutConnector
     @Override
     public void updateFromUIDL(UIDL uidl, ApplicationConnection client) {
         VDragDropUtil.updateDropHandlerFromUIDL(uidl, this, new VDDAbsoluteLayoutDropHandler(this));
-        if (html5Support != null) {
-            html5Support.disable();
-            html5Support = null;
-        }
-        VDDAbsoluteLayoutDropHandler dropHandler = getWidget().getDropHandler();
-        if (dropHandler != null) {
-            html5Support = HTML5Support.enable(this, dropHandler);
+        if (html5Support == null) {
+            html5Support = HTML5Support.create(this);
         }
+        html5Support.setDropHandler(getWidget().getDropHandler());
     }
 
     @Override
@@ -27,6 +27,7 @@ public class VDDAbsoluteLayoutDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
         if (super.drop(drag)) {
             getLayout().updateDragDetails(drag);
             return getLayout().postDropHook(drag);
@@ -43,6 +44,7 @@ public class VDDAbsoluteLayoutDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         super.dragLeave(drag);
 
         // Due to http://dev.vaadin.com/ticket/14880 we need to abort if gwt
@@ -55,6 +57,10 @@ public class VDDAbsoluteLayoutDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
+
         if (drag.getDragImage() != null) {
             drag.getDragImage().getStyle().setProperty("display", "");
         }
@@ -81,14 +81,10 @@ public class DDAccordionConnector extends AccordionConnector
      */
     public void updateFromUIDL(UIDL uidl, ApplicationConnection client) {
         VDragDropUtil.updateDropHandlerFromUIDL(uidl, this, new VDDAccordionDropHandler(this));
-        if (html5Support != null) {
-            html5Support.disable();
-            html5Support = null;
-        }
-        VDDAccordionDropHandler dropHandler = getWidget().getDropHandler();
-        if (dropHandler != null) {
-            html5Support = HTML5Support.enable(this, dropHandler);
+        if (html5Support == null) {
+            html5Support = HTML5Support.create(this);
         }
+        html5Support.setDropHandler(getWidget().getDropHandler());
     }
 
     @Override
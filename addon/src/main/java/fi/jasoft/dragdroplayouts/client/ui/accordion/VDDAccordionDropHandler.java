@@ -33,6 +33,7 @@ public class VDDAccordionDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
         getLayout().deEmphasis();
         getLayout().updateDragDetails(drag);
         return getLayout().postDropHook(drag) && super.drop(drag);
@@ -40,6 +41,9 @@ public class VDDAccordionDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         getLayout().deEmphasis();
 
@@ -64,6 +68,7 @@ public class VDDAccordionDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().deEmphasis();
         getLayout().updateDragDetails(drag);
         getLayout().postLeaveHook(drag);
@@ -72,14 +72,10 @@ public class DDCssLayoutConnector extends CssLayoutConnector
 
     public void updateFromUIDL(UIDL uidl, ApplicationConnection client) {
         VDragDropUtil.updateDropHandlerFromUIDL(uidl, this, new VDDCssLayoutDropHandler(this));
-        if (html5Support != null) {
-            html5Support.disable();
-            html5Support = null;
-        }
-        VDDCssLayoutDropHandler dropHandler = getWidget().getDropHandler();
-        if (dropHandler != null) {
-            html5Support = HTML5Support.enable(this, dropHandler);
+        if (html5Support == null) {
+            html5Support = HTML5Support.create(this);
         }
+        html5Support.setDropHandler(getWidget().getDropHandler());
     }
 
     @Override
@@ -13,6 +13,9 @@
  */
 package fi.jasoft.dragdroplayouts.client.ui.csslayout;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.user.client.DOM;
@@ -166,32 +169,55 @@ public class VDDCssLayout extends VCssLayout implements VHasDragMode,
 
     private Element placeHolderElement;
 
+    // Indexes of the children of the layout, built when a drag enters
+    private Map<Element, Integer> childIndexes;
+
+    // Style of the placeholder, computed when the drag enters the layout
+    private String placeHolderClassName;
+    private int placeHolderWidth;
+    private int placeHolderHeight;
+
+    // The element the size of the placeholder was last taken from
+    private Element placeHolderSizeSource;
+
     public void attachDragImageToLayout(VDragEvent drag) {
         if (placeHolderElement == null) {
             placeHolderElement = DOM.createDiv();
             placeHolderElement.setInnerHTML("&nbsp;");
+            computePlaceHolderStyleProperties(drag);
         }
+        updateChildIndexes();
     }
 
-    private void updatePlaceHolderStyleProperties(VDragEvent drag) {
-        int width = 0;
-        int height = 0;
-        String className = "";
-
-        placeHolderElement.setClassName(DRAG_SHADOW_STYLE_NAME);
+    private void computePlaceHolderStyleProperties(VDragEvent drag) {
+        placeHolderClassName = null;
+        placeHolderWidth = 0;
+        placeHolderHeight = 0;
 
         ComponentConnector draggedConnector = (ComponentConnector) drag
                 .getTransferable()
                 .getData(Constants.TRANSFERABLE_DETAIL_COMPONENT);
         if (draggedConnector != null) {
-            height = Util.getRequiredHeight(draggedConnector.getWidget());
-            width = Util.getRequiredWidth(draggedConnector.getWidget());
-            className = draggedConnector.getWidget().getElement()
+            placeHolderHeight = Util
+                    .getRequiredHeight(draggedConnector.getWidget());
+            placeHolderWidth = Util
+                    .getRequiredWidth(draggedConnector.getWidget());
+            String className = draggedConnector.getWidget().getElement()
                     .getClassName();
-            className = className.replaceAll(
+            placeHolderClassName = className.replaceAll(
                     VLayoutDragDropMouseHandler.ACTIVE_DRAG_SOURCE_STYLENAME,
                     "");
-            placeHolderElement.addClassName(className);
+        }
+    }
+
+    private void updatePlaceHolderStyleProperties(VDragEvent drag) {
+        int width = placeHolderWidth;
+        int height = placeHolderHeight;
+
+        placeHolderElement.setClassName(DRAG_SHADOW_STYLE_NAME);
+
+        if (placeHolderClassName != null) {
+            placeHolderElement.addClassName(placeHolderClassName);
         } else if (drag.getElementOver() != getElement()) {
             width = 3;
             height = drag.getElementOver().getOffsetHeight();
@@ -199,6 +225,7 @@ public class VDDCssLayout extends VCssLayout implements VHasDragMode,
 
         placeHolderElement.getStyle().setWidth(width, Unit.PX);
         placeHolderElement.getStyle().setHeight(height, Unit.PX);
+        placeHolderSizeSource = drag.getElementOver();
     }
 
     public void detachDragImageFromLayout(VDragEvent drag) {
@@ -208,6 +235,8 @@ public class VDDCssLayout extends VCssLayout implements VHasDragMode,
             }
             placeHolderElement = null;
         }
+        placeHolderSizeSource = null;
+        childIndexes = null;
     }
 
     /**
@@ -231,18 +260,8 @@ public class VDDCssLayout extends VCssLayout implements VHasDragMode,
             return;
         }
 
-        int offset = 0;
-        int index = -1;
-        for (int i = 0; i < getElement().getChildCount(); i++) {
-            Element child = getElement().getChild(i).cast();
-            if (child.isOrHasChild(placeHolderElement)) {
-                offset--;
-            } else if (child.isOrHasChild(widget.getElement())) {
-                index = i + offset;
-                break;
-            }
-        }
-        event.getDropDetails().put(Constants.DROP_DETAIL_TO, index);
+        event.getDropDetails().put(Constants.DROP_DETAIL_TO,
+                getChildIndex(widget));
 
         /*
          * The horizontal position within the cell
@@ -265,6 +284,57 @@ public class VDDCssLayout extends VCssLayout implements VHasDragMode,
                 details.serialize());
     }
 
+    /**
+     * Returns the index of the child of the layout containing a widget,
+     * ignoring the placeholder
+     * 
+     * @param widget
+     *            The widget
+     * @return The index of the child or -1 if the widget is not inside a
+     *         child of the layout
+     */
+    private int getChildIndex(Widget widget) {
+        if (childIndexes == null) {
+            updateChildIndexes();
+        }
+
+        // Find the child of the layout containing the widget
+        Element child = widget.getElement();
+        while (child != null && child.getParentElement() != getElement()) {
+            child = child.getParentElement();
+        }
+
+        Integer index = child != null ? childIndexes.get(child) : null;
+        return index != null ? index : -1;
+    }
+
+    /*
+     * Indexes the children of the layout. The placeholder is not indexed so
+     * the indexes stay the same when the placeholder is moved.
+     */
+    private void updateChildIndexes() {
+        childIndexes = new HashMap<Element, Integer>();
+        int index = 0;
+        for (int i = 0; i < getElement().getChildCount(); i++) {
+            Element child = getElement().getChild(i).cast();
+            if (child != placeHolderElement) {
+                childIndexes.put(child, index++);
+            }
+        }
+    }
+
+    @Override
+    public void addOrMove(Widget child, int index) {
+        super.addOrMove(child, index);
+        childIndexes = null;
+    }
+
+    @Override
+    public boolean remove(Widget w) {
+        childIndexes = null;
+        return super.remove(w);
+    }
+
     public void updateDrag(VDragEvent drag) {
 
         if (placeHolderElement == null) {
@@ -281,13 +351,6 @@ public class VDDCssLayout extends VCssLayout implements VHasDragMode,
             return;
         }
 
-        if (placeHolderElement.hasParentElement()) {
-            /*
-             * Remove the placeholder from the DOM so we can reposition
-             */
-            placeHolderElement.removeFromParent();
-        }
-
         Widget w = Util.findWidget(drag.getElementOver(), null);
 
         ComponentConnector draggedConnector = (ComponentConnector) drag
@@ -299,53 +362,108 @@ public class VDDCssLayout extends VCssLayout implements VHasDragMode,
              * Dragging drag image over the placeholder should not have any
              * effect (except placeholder should be removed)
              */
+            removePlaceHolder();
             return;
         }
 
+        /*
+         * The placeholder is only moved when its position changes, moving it
+         * would otherwise cause the browser to lay out the page on every
+         * mouse move
+         */
         if (w != null && w != this) {
 
             HorizontalDropLocation hl = getHorizontalDropLocation(w, drag);
             VerticalDropLocation vl = getVerticalDropLocation(w, drag);
 
-            if (hl == HorizontalDropLocation.LEFT
-                    || vl == VerticalDropLocation.TOP) {
-                Element prev = w.getElement().getPreviousSibling().cast();
-                if (draggedConnector == null || prev == null
-                        || !draggedConnector.getWidget().getElement()
-                                .isOrHasChild(prev)) {
-
-                    w.getElement().getParentElement()
-                            .insertBefore(placeHolderElement, w.getElement());
+            boolean after = !(hl == HorizontalDropLocation.LEFT
+                    || vl == VerticalDropLocation.TOP)
+                    && (hl == HorizontalDropLocation.RIGHT
+                            || vl == VerticalDropLocation.BOTTOM);
 
-                }
-            } else if (hl == HorizontalDropLocation.RIGHT
-                    || vl == VerticalDropLocation.BOTTOM) {
-                Element next = w.getElement().getNextSibling().cast();
+            Element element = w.getElement();
+            if (after) {
+                Element next = getNextSibling(element);
                 if (draggedConnector == null || next == null
                         || !draggedConnector.getWidget().getElement()
                                 .isOrHasChild(next)) {
-                    w.getElement().getParentElement()
-                            .insertAfter(placeHolderElement, w.getElement());
+                    if (element.getNextSibling() != placeHolderElement) {
+                        element.getParentElement()
+                                .insertAfter(placeHolderElement, element);
+                        updatePlaceHolderStyleProperties(drag);
+                    } else {
+                        updatePlaceHolderSize(drag);
+                    }
+                } else {
+                    removePlaceHolder();
                 }
-
             } else {
-                Element prev = w.getElement().getPreviousSibling().cast();
+                Element prev = getPreviousSibling(element);
                 if (draggedConnector == null || prev == null
                         || !draggedConnector.getWidget().getElement()
                                 .isOrHasChild(prev)) {
-                    w.getElement().getParentElement()
-                            .insertBefore(placeHolderElement, w.getElement());
+                    if (element.getPreviousSibling() != placeHolderElement) {
+                        element.getParentElement()
+                                .insertBefore(placeHolderElement, element);
+                        updatePlaceHolderStyleProperties(drag);
+                    } else {
+                        updatePlaceHolderSize(drag);
+                    }
+                } else {
+                    removePlaceHolder();
                 }
             }
 
-        } else {
+        } else if (placeHolderElement.getParentElement() != getElement()
+                || placeHolderElement.getNextSibling() != null) {
             /*
              * First child or hoovering outside of current components
              */
             getElement().appendChild(placeHolderElement);
+            updatePlaceHolderStyleProperties(drag);
+        } else {
+            updatePlaceHolderSize(drag);
         }
+    }
+
+    /*
+     * Without a placeholder style name the placeholder is as high as the
+     * element under the pointer, which can change while the placeholder stays
+     * in place
+     */
+    private void updatePlaceHolderSize(VDragEvent drag) {
+        if (placeHolderClassName == null
+                && drag.getElementOver() != placeHolderSizeSource) {
+            updatePlaceHolderStyleProperties(drag);
+        }
+    }
 
-        updatePlaceHolderStyleProperties(drag);
+    private void removePlaceHolder() {
+        if (placeHolderElement.hasParentElement()) {
+            placeHolderElement.removeFromParent();
+        }
+    }
+
+    /*
+     * The sibling before the element, ignoring the placeholder
+     */
+    private Element getPreviousSibling(Element element) {
+        Element prev = element.getPreviousSibling().cast();
+        if (prev != null && prev == placeHolderElement) {
+            prev = prev.getPreviousSibling().cast();
+        }
+        return prev;
+    }
+
+    /*
+     * The sibling after the element, ignoring the placeholder
+     */
+    private Element getNextSibling(Element element) {
+        Element next = element.getNextSibling().cast();
+        if (next != null && next == placeHolderElement) {
+            next = next.getNextSibling().cast();
+        }
+        return next;
     }
 
     /**
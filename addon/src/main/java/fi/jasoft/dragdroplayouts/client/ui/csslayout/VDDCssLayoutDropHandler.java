@@ -28,6 +28,7 @@ public class VDDCssLayoutDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
         getLayout().updateDragDetails(drag);
         getLayout().detachDragImageFromLayout(drag);
         return getLayout().postDropHook(drag) && super.drop(drag);
@@ -43,6 +44,7 @@ public class VDDCssLayoutDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         super.dragLeave(drag);
         getLayout().detachDragImageFromLayout(drag);
         getLayout().postLeaveHook(drag);
@@ -50,6 +52,10 @@ public class VDDCssLayoutDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
+
         getLayout().updateDragDetails(drag);
         getLayout().postOverHook(drag);
 
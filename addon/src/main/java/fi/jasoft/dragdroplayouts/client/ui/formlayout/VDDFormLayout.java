@@ -14,7 +14,6 @@
 package fi.jasoft.dragdroplayouts.client.ui.formlayout;
 
 import com.google.gwt.dom.client.Element;
-import com.google.gwt.user.client.ui.UIObject;
 import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ApplicationConnection;
 import com.vaadin.client.ComponentConnector;
@@ -31,6 +30,7 @@ import fi.jasoft.dragdroplayouts.client.VGrabFilter;
 import fi.jasoft.dragdroplayouts.client.ui.*;
 import fi.jasoft.dragdroplayouts.client.ui.VLayoutDragDropMouseHandler.DragStartListener;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.*;
+import fi.jasoft.dragdroplayouts.client.ui.util.EmphasisStyles;
 import fi.jasoft.dragdroplayouts.client.ui.util.IframeCoverUtility;
 
 /**
@@ -43,7 +43,7 @@ public class VDDFormLayout extends VFormLayout implements VHasDragMode,
         VDDHasDropHandler<VDDFormLayoutDropHandler>, DragStartListener,
         VHasDragFilter, VHasIframeShims, VHasDragImageReferenceSupport, VHasGrabFilter, VHasDragCaptionProvider {
 
-    private Element currentlyEmphasised;
+    private final EmphasisStyles emphasisStyles = new EmphasisStyles();
 
     private float cellTopBottomDropRatio;
 
@@ -55,6 +55,9 @@ public class VDDFormLayout extends VFormLayout implements VHasDragMode,
 
     public static final String OVER_SPACED = OVER + "-spaced";
 
+    private static final String[] OVER_LOCATIONS = EmphasisStyles
+            .getLocationStyleNames(OVER, VerticalDropLocation.values());
+
     private VDDFormLayoutDropHandler dropHandler;
 
     private VDragFilter dragFilter;
@@ -111,25 +114,7 @@ public class VDDFormLayout extends VFormLayout implements VHasDragMode,
      * Removes any applies drag and drop style applied by emphasis()
      */
     protected void deEmphasis() {
-        if (currentlyEmphasised != null) {
-            // Universal over style
-            UIObject.setStyleName(currentlyEmphasised, OVER, false);
-            UIObject.setStyleName(currentlyEmphasised, OVER_SPACED, false);
-
-            // Vertical styles
-            UIObject.setStyleName(currentlyEmphasised,
-                    OVER + "-"
-                            + VerticalDropLocation.TOP.toString().toLowerCase(),
-                    false);
-            UIObject.setStyleName(currentlyEmphasised, OVER + "-"
-                    + VerticalDropLocation.MIDDLE.toString().toLowerCase(),
-                    false);
-            UIObject.setStyleName(currentlyEmphasised, OVER + "-"
-                    + VerticalDropLocation.BOTTOM.toString().toLowerCase(),
-                    false);
-
-            currentlyEmphasised = null;
-        }
+        emphasisStyles.clear();
     }
 
     /**
@@ -224,11 +209,10 @@ public class VDDFormLayout extends VFormLayout implements VHasDragMode,
      */
     protected void emphasis(Widget widget, VDragEvent event) {
 
-        // Remove emphasis from previous hovers
-        deEmphasis();
-
         // Validate
         if (widget == null || !getElement().isOrHasChild(widget.getElement())) {
+            // Remove emphasis from previous hovers
+            deEmphasis();
             return;
         }
 
@@ -238,15 +222,13 @@ public class VDDFormLayout extends VFormLayout implements VHasDragMode,
         Element rowElement = getRowFromChildElement(widget.getElement(),
                 VDDFormLayout.this.getElement());
 
-        currentlyEmphasised = rowElement;
-
+        // Only changes the DOM if the row or location has changed
         if (rowElement != this.getElement()) {
             VerticalDropLocation vl = getVerticalDropLocation(rowElement,
                     event);
-            UIObject.setStyleName(rowElement,
-                    OVER + "-" + vl.toString().toLowerCase(), true);
+            emphasisStyles.emphasis(rowElement, OVER_LOCATIONS[vl.ordinal()]);
         } else {
-            UIObject.setStyleName(rowElement, OVER, true);
+            emphasisStyles.emphasis(rowElement, OVER);
         }
     }
 
@@ -35,6 +35,7 @@ public class VDDFormLayoutDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
 
         // Un-emphasis any selections
         getLayout().emphasis(null, null);
@@ -102,6 +103,9 @@ public class VDDFormLayoutDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         // Remove any emphasis
         getLayout().emphasis(null, null);
@@ -147,6 +151,7 @@ public class VDDFormLayoutDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().emphasis(null, drag);
         getLayout().postLeaveHook(drag);
     }
@@ -14,6 +14,7 @@
 package fi.jasoft.dragdroplayouts.client.ui.gridlayout;
 
 import com.vaadin.client.ApplicationConnection;
+import com.vaadin.client.ConnectorHierarchyChangeEvent;
 import com.vaadin.client.Paintable;
 import com.vaadin.client.UIDL;
 import com.vaadin.client.ui.gridlayout.GridLayoutConnector;
@@ -73,14 +74,17 @@ public class DDGridLayoutConnector extends GridLayoutConnector
     @Override
     public void updateFromUIDL(UIDL uidl, ApplicationConnection client) {
         VDragDropUtil.updateDropHandlerFromUIDL(uidl, this, new VDDGridLayoutDropHandler(this));
-        if (html5Support != null) {
-            html5Support.disable();
-            html5Support = null;
-        }
-        VDDGridLayoutDropHandler dropHandler = getWidget().getDropHandler();
-        if (dropHandler != null) {
-            html5Support = HTML5Support.enable(this, dropHandler);
+        if (html5Support == null) {
+            html5Support = HTML5Support.create(this);
         }
+        html5Support.setDropHandler(getWidget().getDropHandler());
+    }
+
+    @Override
+    public void onConnectorHierarchyChange(
+            ConnectorHierarchyChangeEvent event) {
+        super.onConnectorHierarchyChange(event);
+        getWidget().invalidateCellOffsets();
     }
 
     @Override
@@ -17,7 +17,6 @@ import com.google.gwt.dom.client.Style;
 import com.google.gwt.dom.client.Style.Position;
 import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.user.client.ui.HTML;
-import com.google.gwt.user.client.ui.UIObject;
 import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ApplicationConnection;
 import com.vaadin.client.ComponentConnector;
@@ -34,7 +33,9 @@ import fi.jasoft.dragdroplayouts.client.VGrabFilter;
 import fi.jasoft.dragdroplayouts.client.ui.*;
 import fi.jasoft.dragdroplayouts.client.ui.VLayoutDragDropMouseHandler.DragStartListener;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.*;
+import fi.jasoft.dragdroplayouts.client.ui.util.EmphasisStyles;
 import fi.jasoft.dragdroplayouts.client.ui.util.IframeCoverUtility;
+import fi.jasoft.dragdroplayouts.client.ui.util.SlotGeometry;
 
 import java.util.Map;
 
@@ -51,6 +52,14 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
     public static final String CLASSNAME = "v-ddgridlayout";
     public static final String OVER = CLASSNAME + "-over";
 
+    private static final String[] OVER_VERTICAL = EmphasisStyles
+            .getLocationStyleNames(OVER, VerticalDropLocation.values());
+
+    private static final String[] OVER_HORIZONTAL = EmphasisStyles
+            .getLocationStyleNames(OVER, HorizontalDropLocation.values());
+
+    private final EmphasisStyles emphasisStyles = new EmphasisStyles();
+
     private VDDGridLayoutDropHandler dropHandler;
 
     final HTML dragShadow = new HTML("");
@@ -77,6 +86,25 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
 
     private boolean iframeCovers = false;
 
+    // Cumulative cell positions including the spacing, computed on drag enter
+    private int[] columnOffsets;
+    private int[] rowOffsets;
+    private int[] columnWidthsSnapshot;
+    private int[] rowHeightsSnapshot;
+    private boolean cellOffsetsValid;
+
+    // Position of the layout when the cell offsets were computed
+    private int originLeft;
+    private int originTop;
+    private int offsetsGeneration;
+
+    // The latest cell lookup
+    private final CellDetails cellDetails = new CellDetails();
+    private int cellDetailsX;
+    private int cellDetailsY;
+    private boolean cellDetailsValid;
+    private boolean cellDetailsFound;
+
     public VDDGridLayout() {
         super();
     }
@@ -189,7 +217,7 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
         // Get the horizontal location
         HorizontalDropLocation hdetail;
         int x = Util.getTouchOrMouseClientX(event.getCurrentGwtEvent())
-                - getAbsoluteLeft() - cell.x;
+                - originLeft - cell.x;
 
         assert(x >= 0 && x <= cell.width);
 
@@ -218,7 +246,7 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
         // Get the vertical location
         VerticalDropLocation vdetail;
         int y = Util.getTouchOrMouseClientY(event.getCurrentGwtEvent())
-                - getAbsoluteTop() - cell.y;
+                - originTop - cell.y;
 
         assert(y >= 0 && y <= cell.height);
 
@@ -249,9 +277,6 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
         shadowStyle.setLeft(cell.x, Unit.PX);
         shadowStyle.setTop(cell.y, Unit.PX);
 
-        // Remove any existing empasis
-        deEmphasis();
-
         // Ensure we are not dragging ourself into ourself
         ComponentConnector draggedConnector = (ComponentConnector) event
                 .getTransferable()
@@ -259,58 +284,25 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
 
         if (draggedConnector != null
                 && draggedConnector.getWidget() == VDDGridLayout.this) {
+            // Remove any existing empasis
+            deEmphasis();
             return;
         }
 
         HorizontalDropLocation hl = getHorizontalDropLocation(cell, event);
         VerticalDropLocation vl = getVerticalDropLocation(cell, event);
 
-        // Apply over style
-        UIObject.setStyleName(dragShadow.getElement(), OVER, true);
-
-        // Add vertical location dependent style
-        UIObject.setStyleName(dragShadow.getElement(),
-                OVER + "-" + vl.toString().toLowerCase(), true);
-
-        // Add horizontal location dependent style
-        UIObject.setStyleName(dragShadow.getElement(),
-                OVER + "-" + hl.toString().toLowerCase(), true);
-
+        // Apply over style and the location dependent styles, only changes
+        // the DOM if the location has changed
+        emphasisStyles.emphasis(dragShadow.getElement(), OVER,
+                OVER_VERTICAL[vl.ordinal()], OVER_HORIZONTAL[hl.ordinal()]);
     }
 
     /**
      * Removes any emphasis previously set by emphasis
      */
     protected void deEmphasis() {
-
-        UIObject.setStyleName(dragShadow.getElement(), OVER, false);
-
-        // Horizontal styles
-        UIObject.setStyleName(dragShadow.getElement(),
-                OVER + "-"
-                        + HorizontalDropLocation.LEFT.toString().toLowerCase(),
-                false);
-        UIObject.setStyleName(dragShadow.getElement(), OVER + "-"
-                + HorizontalDropLocation.CENTER.toString().toLowerCase(),
-                false);
-        UIObject.setStyleName(dragShadow.getElement(),
-                OVER + "-"
-                        + HorizontalDropLocation.RIGHT.toString().toLowerCase(),
-                false);
-
-        // Vertical styles
-        UIObject.setStyleName(dragShadow.getElement(),
-                OVER + "-" + VerticalDropLocation.TOP.toString().toLowerCase(),
-                false);
-        UIObject.setStyleName(dragShadow.getElement(),
-                OVER + "-"
-                        + VerticalDropLocation.MIDDLE.toString().toLowerCase(),
-                false);
-        UIObject.setStyleName(dragShadow.getElement(),
-                OVER + "-"
-                        + VerticalDropLocation.BOTTOM.toString().toLowerCase(),
-                false);
-
+        emphasisStyles.clear();
     }
 
     public LayoutDragMode getDragMode() {
@@ -365,7 +357,8 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
 
     /**
      * A helper class returned by getCellDetailsByCoordinates() which contains
-     * positional and size data of the cell.
+     * positional and size data of the cell. The same instance is reused for
+     * every lookup so the details should not be stored.
      */
     protected class CellDetails {
         public int row = -1;
@@ -376,11 +369,83 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
         public int height = -1;
     }
 
+    /**
+     * Computes the cell positions used for looking up the cell under the
+     * pointer. Called when a drag enters the layout, the positions are
+     * computed again if the layout changes, is scrolled or is resized during
+     * the drag.
+     */
+    void updateCellOffsets() {
+        SlotGeometry.listen();
+        offsetsGeneration = SlotGeometry.getGeneration();
+        originLeft = getAbsoluteLeft();
+        originTop = getAbsoluteTop();
+
+        int[] columns = getColumnWidths();
+        int[] rows = getRowHeights();
+        if (columns == null || rows == null) {
+            cellOffsetsValid = false;
+            return;
+        }
+
+        columnWidthsSnapshot = cloneSizes(columns);
+        rowHeightsSnapshot = cloneSizes(rows);
+        columnOffsets = computeOffsets(columnWidthsSnapshot,
+                getHorizontalSpacing());
+        rowOffsets = computeOffsets(rowHeightsSnapshot,
+                getVerticalSpacing());
+        cellOffsetsValid = true;
+        cellDetailsValid = false;
+    }
+
+    /*
+     * Computes the cell positions again if they may have become outdated
+     */
+    private boolean ensureCellOffsets() {
+        if (!cellOffsetsValid
+                || offsetsGeneration != SlotGeometry.getGeneration()) {
+            updateCellOffsets();
+        }
+        return cellOffsetsValid;
+    }
+
+    void invalidateCellOffsets() {
+        cellOffsetsValid = false;
+        cellDetailsValid = false;
+    }
+
+    @Override
+    public void updateHeight() {
+        super.updateHeight();
+        invalidateCellOffsets();
+    }
+
+    @Override
+    public void updateWidth() {
+        super.updateWidth();
+        invalidateCellOffsets();
+    }
+
+    @Override
+    public void updateSpacingStyleName(boolean spacingEnabled) {
+        super.updateSpacingStyleName(spacingEnabled);
+        invalidateCellOffsets();
+    }
+
+    @Override
+    public void setSize(int rows, int cols) {
+        super.setSize(rows, cols);
+        invalidateCellOffsets();
+    }
+
     CellDetails getCellDetails(VDragEvent event) {
+        if (!ensureCellOffsets()) {
+            return null;
+        }
         int x = Util.getTouchOrMouseClientX(event.getCurrentGwtEvent())
-                - getAbsoluteLeft();
+                - originLeft;
         int y = Util.getTouchOrMouseClientY(event.getCurrentGwtEvent())
-                - getAbsoluteTop();
+                - originTop;
         return getCellDetailsByCoordinates(x, y);
     }
 
@@ -395,43 +460,76 @@ public class VDDGridLayout extends VGridLayout implements VHasDragMode,
      */
     private CellDetails getCellDetailsByCoordinates(int x, int y) {
 
-        CellDetails cd = new CellDetails();
-        int[] columnWidths = getColumnWidths();
-        int[] rowHeights = getRowHeights();
-
-        // Get column and x coordinate
-        int temp = 0;
-        for (int col = 0; col < columnWidths.length; col++) {
-            if (x >= temp && x <= temp + columnWidths[col]) {
-                cd.column = col;
-                cd.x = temp;
-                cd.width = columnWidths[col];
-                break;
-            }
-            temp += columnWidths[col] + getHorizontalSpacing();
+        // The drop details and the emphasis look up the same position
+        if (cellDetailsValid && x == cellDetailsX && y == cellDetailsY) {
+            return cellDetailsFound ? cellDetails : null;
         }
 
-        // get row
-        temp = 0;
-        for (int row = 0; row < rowHeights.length; row++) {
-            if (y >= temp && y <= temp + rowHeights[row]) {
-                cd.row = row;
-                cd.y = temp;
-                cd.height = rowHeights[row];
-                break;
-            }
-            temp += rowHeights[row] + getVerticalSpacing();
-        }
+        CellDetails cd = cellDetails;
+        cd.column = findCell(columnOffsets, columnWidthsSnapshot, x);
+        cd.row = findCell(rowOffsets, rowHeightsSnapshot, y);
+
+        cellDetailsX = x;
+        cellDetailsY = y;
+        cellDetailsValid = true;
 
         // Sanity check
-        if (cd.row == -1 || cd.column == -1 || cd.width == -1
-                || cd.height == -1) {
+        cellDetailsFound = cd.row != -1 && cd.column != -1;
+        if (!cellDetailsFound) {
             return null;
         }
 
+        cd.x = columnOffsets[cd.column];
+        cd.width = columnWidthsSnapshot[cd.column];
+        cd.y = rowOffsets[cd.row];
+        cd.height = rowHeightsSnapshot[cd.row];
         return cd;
     }
 
+    /*
+     * Binary search for the cell containing the position, -1 if the position
+     * is in the spacing or outside of the layout. When a position is on the
+     * border of two cells the first cell is returned.
+     */
+    private static int findCell(int[] offsets, int[] sizes, int position) {
+        int low = 0;
+        int high = offsets.length - 1;
+        int cell = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] <= position) {
+                cell = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (cell > 0 && position <= offsets[cell - 1] + sizes[cell - 1]) {
+            return cell - 1;
+        }
+        if (cell >= 0 && position <= offsets[cell] + sizes[cell]) {
+            return cell;
+        }
+        return -1;
+    }
+
+    private static int[] computeOffsets(int[] sizes, int spacing) {
+        int[] offsets = new int[sizes.length];
+        int offset = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            offsets[i] = offset;
+            offset += sizes[i] + spacing;
+        }
+        return offsets;
+    }
+
+    private static int[] cloneSizes(int[] sizes) {
+        int[] clone = new int[sizes.length];
+        System.arraycopy(sizes, 0, clone, 0, sizes.length);
+        return clone;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -30,12 +30,14 @@ public class VDDGridLayoutDropHandler
     @Override
     public void dragEnter(VDragEvent drag) {
         super.dragEnter(drag);
+        getLayout().updateCellOffsets();
         getLayout().updateDragDetails(drag);
         getLayout().postEnterHook(drag);
     }
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
 
         // Update the detail of the drop
         getLayout().updateDragDetails(drag);
@@ -48,6 +50,9 @@ public class VDDGridLayoutDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         // Remove emphasis from previous selection
         getLayout().deEmphasis();
@@ -70,6 +75,7 @@ public class VDDGridLayoutDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().deEmphasis();
         getLayout().postLeaveHook(drag);
         super.dragLeave(drag);
@@ -34,6 +34,7 @@ public class VDDHorizontalSplitPanelDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
 
         // Un-emphasis any selections
         getLayout().deEmphasis();
@@ -45,6 +46,9 @@ public class VDDHorizontalSplitPanelDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         getLayout().deEmphasis();
 
@@ -78,6 +82,7 @@ public class VDDHorizontalSplitPanelDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().deEmphasis();
         getLayout().updateDragDetails(drag);
         getLayout().postLeaveHook(drag);
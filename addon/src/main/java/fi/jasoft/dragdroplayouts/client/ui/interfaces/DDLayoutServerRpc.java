@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.client.ui.interfaces;
+
+import com.vaadin.shared.Connector;
+import com.vaadin.shared.communication.ServerRpc;
+
+/**
+ * Requests drag and drop details which are resolved lazily by the server. The
+ * server answers by updating the {@link DDLayoutState} of the layout.
+ */
+public interface DDLayoutServerRpc extends ServerRpc {
+
+    /**
+     * Requests the drag caption of a child component. Used when
+     * {@link DDLayoutState#lazyDragCaptions} is enabled.
+     *
+     * @param component
+     *            The child component which is being dragged
+     */
+    void requestDragCaption(Connector component);
+
+    /**
+     * Requests the reference drag image of a child component. Used when
+     * {@link DDLayoutState#lazyDragImages} is enabled.
+     *
+     * @param component
+     *            The child component which is being dragged
+     */
+    void requestDragImage(Connector component);
+}
@@ -16,6 +16,7 @@ package fi.jasoft.dragdroplayouts.client.ui.interfaces;
 import com.vaadin.shared.Connector;
 import com.vaadin.shared.communication.SharedState;
 import fi.jasoft.dragdroplayouts.client.ui.DragCaptionInfo;
+import fi.jasoft.dragdroplayouts.client.ui.DragProxyMode;
 import fi.jasoft.dragdroplayouts.client.ui.LayoutDragMode;
 
 import java.util.ArrayList;
@@ -25,23 +26,57 @@ import java.util.Map;
 
 public class DDLayoutState extends SharedState {
 
+    // The default maximum number of nodes in a LIMITED_CLONE drag proxy
+    public static final int DEFAULT_DRAG_PROXY_NODE_LIMIT = 200;
+
     // The current drag mode, default is dragging is not supported
     public LayoutDragMode dragMode = LayoutDragMode.NONE;
 
+    // What is shown while dragging a component
+    public DragProxyMode dragProxyMode = DragProxyMode.CLONE;
+
+    // Maximum number of nodes in a LIMITED_CLONE drag proxy
+    public int dragProxyNodeLimit = DEFAULT_DRAG_PROXY_NODE_LIMIT;
+
+    // Is the drag image moved with a CSS transform
+    public boolean transformDragImage = false;
+
     // Are the iframes shimmed
     public boolean iframeShims = true;
 
+    // Are the iframes shimmed only while dragging
+    public boolean dragScopedIframeShims = false;
+
     // Which connectors are draggable
     public List<Connector> draggable = new ArrayList<>();
 
+    // Compact form of draggable used when most children are draggable. When
+    // true all children except the ones in nonDraggable are draggable and the
+    // draggable list is left empty.
+    public boolean draggableByDefault = false;
+
+    // Which children are not draggable when draggableByDefault is true
+    public List<Connector> nonDraggable = new ArrayList<>();
+
     // Which connectors cannot be used as anchor
     public List<Connector> nonGrabbable = new ArrayList<>();
 
     // Reference drag images
     public Map<Connector, Connector> referenceImageComponents = new HashMap<>();
 
+    // Are reference drag images requested from the server only when a drag
+    // starts. In that case referenceImageComponents only contains the latest
+    // answer, the client caches the previous ones.
+    public boolean lazyDragImages = false;
+
+    // Changed when lazily resolved drag images need to be resolved again
+    public int dragImageRevision = 0;
+
     // Custom DragCaption's with icon and caption
     public Map<Connector, DragCaptionInfo> dragCaptions = new HashMap<>();
 
+    // Are drag captions requested from the server only when a drag starts
+    public boolean lazyDragCaptions = false;
+
     public Map<Connector, String> dragIcons = new HashMap<>();
 }
\ No newline at end of file
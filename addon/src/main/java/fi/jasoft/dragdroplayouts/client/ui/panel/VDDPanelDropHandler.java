@@ -33,6 +33,7 @@ public class VDDPanelDropHandler extends VDDAbstractDropHandler<VDDPanel> {
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
         VConsole.log("Drop!");
 
         // Un-emphasis any selections
@@ -46,6 +47,9 @@ public class VDDPanelDropHandler extends VDDAbstractDropHandler<VDDPanel> {
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         VConsole.log("Drag over");
 
@@ -73,6 +77,7 @@ public class VDDPanelDropHandler extends VDDAbstractDropHandler<VDDPanel> {
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().deEmphasis();
         getLayout().postLeaveHook(drag);
     }
@@ -33,6 +33,7 @@ public class VDDTabsheetDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
 
         getLayout().deEmphasis();
 
@@ -43,6 +44,9 @@ public class VDDTabsheetDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         getLayout().deEmphasis();
 
@@ -67,6 +71,7 @@ public class VDDTabsheetDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().deEmphasis();
         getLayout().updateDragDetails(drag);
         getLayout().postLeaveHook(drag);
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.client.ui.util;
+
+import java.util.Arrays;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Element;
+
+/**
+ * Remembers which element is emphasised with which style names while
+ * dragging and only touches the DOM when the emphasis actually changes.
+ * <p>
+ * Drop handlers typically remove the emphasis on every drag over and add it
+ * again once the drop has been accepted. The changes are therefore collected
+ * and applied at the end of the current event loop, so a drag over which
+ * ends up emphasising the same element with the same styles does not change
+ * the DOM at all.
+ */
+public class EmphasisStyles {
+
+    private static final String[] NONE = new String[0];
+
+    // The emphasis in the DOM
+    private Element element;
+    private String[] styleNames = NONE;
+
+    // The emphasis applied at the end of the event loop
+    private Element pendingElement;
+    private String[] pendingStyleNames = NONE;
+
+    private boolean scheduled;
+
+    private final ScheduledCommand applyCommand = new ScheduledCommand() {
+        @Override
+        public void execute() {
+            apply();
+        }
+    };
+
+    /**
+     * Computes the style names of drop locations once so they do not need to
+     * be built on every drag over
+     * 
+     * @param prefix
+     *            The style name prefix, i.e. the over style name
+     * @param locations
+     *            The drop locations, i.e. VerticalDropLocation.values()
+     * @return The style names indexed by the ordinal of the location
+     */
+    public static String[] getLocationStyleNames(String prefix,
+            Enum<?>[] locations) {
+        String[] names = new String[locations.length];
+        for (Enum<?> location : locations) {
+            names[location.ordinal()] = prefix + "-"
+                    + location.toString().toLowerCase();
+        }
+        return names;
+    }
+
+    /**
+     * Emphasises an element with the given style names, removing any
+     * previous emphasis
+     * 
+     * @param element
+     *            The element to emphasise
+     * @param styleNames
+     *            The style names of the emphasis
+     */
+    public void emphasis(Element element, String... styleNames) {
+        pendingElement = element;
+        pendingStyleNames = styleNames;
+        schedule();
+    }
+
+    /**
+     * Removes any emphasis
+     */
+    public void clear() {
+        pendingElement = null;
+        pendingStyleNames = NONE;
+        schedule();
+    }
+
+    /**
+     * Returns the currently emphasised element or null if nothing is
+     * emphasised
+     */
+    public Element getElement() {
+        return pendingElement;
+    }
+
+    /**
+     * Applies the emphasis to the DOM immediately instead of at the end of
+     * the event loop
+     */
+    public void flush() {
+        if (scheduled) {
+            apply();
+        }
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            Scheduler.get().scheduleFinally(applyCommand);
+        }
+    }
+
+    private void apply() {
+        scheduled = false;
+        if (element == pendingElement
+                && Arrays.equals(styleNames, pendingStyleNames)) {
+            return;
+        }
+
+        boolean sameElement = element == pendingElement;
+        if (element != null) {
+            for (String styleName : styleNames) {
+                if (!sameElement || !contains(pendingStyleNames, styleName)) {
+                    element.removeClassName(styleName);
+                }
+            }
+        }
+        if (pendingElement != null) {
+            for (String styleName : pendingStyleNames) {
+                if (!sameElement || !contains(styleNames, styleName)) {
+                    pendingElement.addClassName(styleName);
+                }
+            }
+        }
+
+        element = pendingElement;
+        styleNames = pendingStyleNames;
+    }
+
+    private static boolean contains(String[] styleNames, String styleName) {
+        for (String s : styleNames) {
+            if (s.equals(styleName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -50,6 +50,10 @@ public class HTML5Support {
 
     private final List<HandlerRegistration> handlers = new ArrayList<HandlerRegistration>();
 
+    // The connector and drag handler of a reusable support
+    private ComponentConnector connector;
+    private HTML5DragHandler dragHandler;
+
     public static class HTML5DragHandler
             implements DragEnterHandler, DragOverHandler, DropHandler {
 
@@ -65,6 +69,17 @@ public class HTML5Support {
             this.dropHandler = handler;
         }
 
+        /**
+         * Replaces the drop handler which handles the HTML5 drops
+         * 
+         * @param handler
+         *            The drop handler of the connector
+         */
+        public void setDropHandler(
+                VDDAbstractDropHandler<? extends Widget> handler) {
+            this.dropHandler = handler;
+        }
+
         @Override
         public void onDrop(DropEvent event) {
             NativeEvent nativeEvent = event.getNativeEvent();
@@ -190,18 +205,55 @@ public class HTML5Support {
             return null;
         }
 
-        Widget w = connector.getWidget();
+        final HTML5Support support = create(connector);
+        support.setDropHandler(handler);
+        return support;
+    }
+
+    /**
+     * Creates a reusable HTML5 support for a connector. Drops are handled
+     * once a drop handler is set with
+     * {@link #setDropHandler(VDDAbstractDropHandler)}.
+     * 
+     * @param connector
+     *            The connector which accepts the drops
+     * @return The HTML5 support of the connector
+     */
+    public static final HTML5Support create(ComponentConnector connector) {
         final HTML5Support support = GWT.create(HTML5Support.class);
-        final HTML5DragHandler dragHandler = new HTML5DragHandler(connector,
-                handler);
+        support.connector = connector;
+        return support;
+    }
+
+    /**
+     * Sets the drop handler which handles the HTML5 drops. The DOM handlers
+     * are only added when the first drop handler is set and removed when the
+     * drop handler is set to null, other changes only replace the handler.
+     * 
+     * @param handler
+     *            The drop handler or null to not accept HTML5 drops
+     */
+    public void setDropHandler(
+            VDDAbstractDropHandler<? extends Widget> handler) {
+        if (handler == null) {
+            disable();
+            return;
+        }
 
-        support.handlers
-                .add(w.addDomHandler(dragHandler, DragEnterEvent.getType()));
-        support.handlers
-                .add(w.addDomHandler(dragHandler, DragOverEvent.getType()));
-        support.handlers.add(w.addDomHandler(dragHandler, DropEvent.getType()));
+        if (dragHandler == null) {
+            dragHandler = new HTML5DragHandler(connector, handler);
+        } else {
+            dragHandler.setDropHandler(handler);
+        }
 
-        return support;
+        if (handlers.isEmpty()) {
+            Widget w = connector.getWidget();
+            handlers.add(
+                    w.addDomHandler(dragHandler, DragEnterEvent.getType()));
+            handlers.add(
+                    w.addDomHandler(dragHandler, DragOverEvent.getType()));
+            handlers.add(w.addDomHandler(dragHandler, DropEvent.getType()));
+        }
     }
 
     private HTML5Support() {
@@ -14,11 +14,15 @@
 package fi.jasoft.dragdroplayouts.client.ui.util;
 
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.dom.client.BodyElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.NodeList;
 import com.google.gwt.dom.client.Style;
 import com.google.gwt.dom.client.Style.Position;
@@ -38,10 +42,15 @@ public class IframeCoverUtility {
 
     public static final String SHIM_STYLENAME = "v-dragdrop-iframe-cover";
 
-    private static Map<Element, Element> iframeCoverMap = new HashMap<Element, Element>();
-
     public static final String SHIM_ATTRIBUTE = "shims";
 
+    /**
+     * Style name of the body while iframes are shielded during a drag
+     */
+    public static final String DRAG_SHIELD_STYLENAME = "v-dragdrop-iframe-shield";
+
+    private static final String CONTAINER_STYLENAME = "v-dragdrop-iframe-container";
+
     /**
      * Adds an iframe cover over an Embedded component
      * 
@@ -50,10 +59,6 @@ public class IframeCoverUtility {
      * @return The element which covers the iframe
      */
     private static Element addIframeCover(Element iframe) {
-        if (iframeCoverMap.containsKey(iframe)) {
-            return iframeCoverMap.get(iframe);
-        }
-
         // Get dimensions
         String iframeWidth = iframe.getAttribute("width");
         String iframeHeight = iframe.getAttribute("height");
@@ -71,7 +76,7 @@ public class IframeCoverUtility {
         DOM.setStyleAttribute(coverContainer, "width", iframeWidth);
         DOM.setStyleAttribute(coverContainer, "height", iframeHeight);
 
-        coverContainer.setClassName("v-dragdrop-iframe-container");
+        coverContainer.setClassName(CONTAINER_STYLENAME);
         coverContainer.getStyle().setPosition(Position.RELATIVE);
         iframe.getParentElement().appendChild(coverContainer);
 
@@ -91,8 +96,6 @@ public class IframeCoverUtility {
 
         coverContainer.appendChild(cover);
 
-        iframeCoverMap.put(iframe, coverContainer);
-
         return coverContainer;
     }
 
@@ -101,55 +104,114 @@ public class IframeCoverUtility {
      * 
      * @param iframe
      *            The iframe element which has been covered
+     * @param coverContainer
+     *            The element which covers the iframe
      */
-    private static void removeIframeCover(Element iframe) {
-        Element coverContainer = iframeCoverMap.get(iframe);
-        if (coverContainer != null) {
-            Element parent = coverContainer.getParentElement().cast();
+    private static void removeIframeCover(Element iframe,
+            Element coverContainer) {
+        Element parent = coverContainer.getParentElement().cast();
+        if (parent != null && iframe.getParentElement() == coverContainer) {
             parent.replaceChild(iframe, coverContainer);
             iframe.getStyle().clearPosition();
-            iframeCoverMap.remove(iframe);
         }
     }
 
+    /**
+     * Is the iframe already covered, for instance by a nested layout
+     */
+    private static boolean isCovered(Element iframe) {
+        com.google.gwt.dom.client.Element parent = iframe.getParentElement();
+        return parent != null && parent.hasClassName(CONTAINER_STYLENAME);
+    }
+
     /**
      * Adds iframe covers for all child iframe elements
      * 
      * @param rootElement
      *            The parent element
-     * @return A set of elements with the iframe covers
+     * @param previous
+     *            The iframes covered the previous time, their covers are
+     *            reused or removed if the iframe is no longer in the element
+     * @return The covered iframes and their cover containers
      */
-    private static Set<Element> addIframeCovers(Element rootElement) {
-        Set<Element> coveredIframes = new HashSet<Element>();
+    private static Map<Element, Element> addIframeCovers(Element rootElement,
+            Map<Element, Element> previous) {
+        Map<Element, Element> covered = new HashMap<Element, Element>();
         NodeList<com.google.gwt.dom.client.Element> iframes = rootElement
                 .getElementsByTagName("iframe");
         for (int i = 0; i < iframes.getLength(); i++) {
             Element iframe = (Element) iframes.getItem(i);
-            addIframeCover(iframe);
-            coveredIframes.add(iframe);
+            Element coverContainer = previous == null ? null
+                    : previous.remove(iframe);
+            if (coverContainer == null
+                    || iframe.getParentElement() != coverContainer) {
+                if (isCovered(iframe)) {
+                    // Covered by another layout which also removes the cover
+                    continue;
+                }
+                coverContainer = addIframeCover(iframe);
+            }
+            covered.put(iframe, coverContainer);
         }
-        return coveredIframes;
+
+        // Forget the iframes which have been removed from the layout
+        removeIframeCovers(previous);
+        return covered;
     }
 
     /**
      * Removes iframe covers from a set of iframes
      * 
      * @param iframes
-     *            The iframes to remove the covers from
+     *            The iframes and their cover containers
      */
-    private static void removeIframeCovers(Set<Element> iframes) {
+    private static void removeIframeCovers(Map<Element, Element> iframes) {
         if (iframes != null) {
-            for (Element iframe : iframes) {
-                removeIframeCover(iframe);
+            for (Map.Entry<Element, Element> iframe : iframes.entrySet()) {
+                removeIframeCover(iframe.getKey(), iframe.getValue());
             }
         }
     }
 
-    // The covered ifream covers
-    private Set<Element> coveredIframes = new HashSet<Element>();
+    /**
+     * Shields all iframes of the page from mouse events while something is
+     * dragged. The iframes are not moved in the DOM and the drop targets under
+     * them can still be found from the mouse position.
+     * 
+     * @param enabled
+     *            true when a drag starts, false when it ends
+     */
+    public static void setDragShieldEnabled(boolean enabled) {
+        BodyElement body = Document.get().getBody();
+        if (enabled) {
+            body.addClassName(DRAG_SHIELD_STYLENAME);
+        } else {
+            body.removeClassName(DRAG_SHIELD_STYLENAME);
+        }
+    }
+
+    // The covered iframes and their cover containers
+    private Map<Element, Element> coveredIframes;
+
+    // Observes the covered element for added and removed iframes, null if
+    // the browser does not support mutation observers
+    private JavaScriptObject observer;
+
+    // The element which iframes are covered
+    private Element coveredRoot;
+
+    // The latest requested state, applied by a deferred command
+    private boolean coversEnabled;
+    private Element requestedRoot;
+    private boolean updateScheduled;
 
     /**
      * Enable IFrame covers for a element
+     * <p>
+     * Once enabled the iframes added to or removed from the element are
+     * covered and uncovered as they come and go, so the element is not
+     * scanned again while the covers stay enabled. Disabling the covers also
+     * stops observing the element.
      * 
      * @param enabled
      *            Enable/Disable Iframe covers
@@ -158,20 +220,137 @@ public class IframeCoverUtility {
      */
     public void setIframeCoversEnabled(final boolean enabled,
             final Element root, final LayoutDragMode mode) {
-        Scheduler.get().scheduleDeferred(new Scheduler.ScheduledCommand() {
-            @Override
-            public void execute() {
-                if (enabled && mode != LayoutDragMode.NONE) {
-                    coveredIframes = addIframeCovers(root);
-                } else if (coveredIframes != null) {
-                    removeIframeCovers(coveredIframes);
-                    coveredIframes = null;
+        coversEnabled = enabled && mode != LayoutDragMode.NONE;
+        requestedRoot = root;
+        if (!coversEnabled) {
+            // Stop observing right away, the layout may be detached
+            disconnect();
+        }
+
+        if (!updateScheduled) {
+            updateScheduled = true;
+            Scheduler.get().scheduleDeferred(new Scheduler.ScheduledCommand() {
+                @Override
+                public void execute() {
+                    updateScheduled = false;
+                    updateIframeCovers();
                 }
-            }
-        });
+            });
+        }
     }
 
     public boolean isIframeCoversEnabled() {
         return coveredIframes != null;
     }
+
+    private void updateIframeCovers() {
+        if (coversEnabled) {
+            if (coveredIframes != null && observer != null
+                    && coveredRoot == requestedRoot) {
+                // Already kept up to date by the observer
+                return;
+            }
+            disconnect();
+            coveredIframes = addIframeCovers(requestedRoot, coveredIframes);
+            coveredRoot = requestedRoot;
+            observer = observe(requestedRoot);
+        } else if (coveredIframes != null) {
+            disconnect();
+            removeIframeCovers(coveredIframes);
+            coveredIframes = null;
+            coveredRoot = null;
+        }
+    }
+
+    /*
+     * Called by the observer with the nodes added to and removed from the
+     * covered element
+     */
+    private void onMutation(JsArray<Node> added, boolean removed) {
+        if (coveredIframes == null) {
+            return;
+        }
+
+        for (int i = 0; i < added.length(); i++) {
+            Node node = added.get(i);
+            // Nodes can already have been removed again
+            if (Element.is(node) && coveredRoot.isOrHasChild(node)) {
+                coverAddedIframes(Element.as(node));
+            }
+        }
+
+        if (removed) {
+            Iterator<Map.Entry<Element, Element>> iframes = coveredIframes
+                    .entrySet().iterator();
+            while (iframes.hasNext()) {
+                Map.Entry<Element, Element> iframe = iframes.next();
+                if (!coveredRoot.isOrHasChild(iframe.getKey())) {
+                    removeIframeCover(iframe.getKey(), iframe.getValue());
+                    iframes.remove();
+                }
+            }
+        }
+
+        // Forget the mutations caused by adding and removing the covers
+        takeRecords(observer);
+    }
+
+    private void coverAddedIframes(com.google.gwt.dom.client.Element element) {
+        if ("iframe".equalsIgnoreCase(element.getTagName())) {
+            coverAddedIframe((Element) element);
+            return;
+        }
+        NodeList<com.google.gwt.dom.client.Element> iframes = element
+                .getElementsByTagName("iframe");
+        for (int i = 0; i < iframes.getLength(); i++) {
+            coverAddedIframe((Element) iframes.getItem(i));
+        }
+    }
+
+    private void coverAddedIframe(Element iframe) {
+        if (!coveredIframes.containsKey(iframe) && !isCovered(iframe)) {
+            coveredIframes.put(iframe, addIframeCover(iframe));
+        }
+    }
+
+    private void disconnect() {
+        if (observer != null) {
+            disconnect(observer);
+            observer = null;
+        }
+    }
+
+    private native JavaScriptObject observe(Element root)
+    /*-{
+        if (!$wnd.MutationObserver) {
+            return null;
+        }
+        var self = this;
+        var observer = new $wnd.MutationObserver($entry(function(records) {
+            var added = [];
+            var removed = false;
+            for (var i = 0; i < records.length; i++) {
+                var nodes = records[i].addedNodes;
+                for (var j = 0; j < nodes.length; j++) {
+                    added.push(nodes[j]);
+                }
+                removed = removed || records[i].removedNodes.length > 0;
+            }
+            self.@fi.jasoft.dragdroplayouts.client.ui.util.IframeCoverUtility::onMutation(*)(added, removed);
+        }));
+        observer.observe(root, { childList: true, subtree: true });
+        return observer;
+    }-*/;
+
+    private static native void takeRecords(JavaScriptObject observer)
+    /*-{
+        if (observer) {
+            observer.takeRecords();
+        }
+    }-*/;
+
+    private static native void disconnect(JavaScriptObject observer)
+    /*-{
+        observer.disconnect();
+    }-*/;
 }
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.client.ui.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.event.logical.shared.ResizeEvent;
+import com.google.gwt.event.logical.shared.ResizeHandler;
+import com.google.gwt.user.client.Window;
+import com.google.gwt.user.client.ui.Widget;
+import com.vaadin.client.ConnectorHierarchyChangeEvent;
+import com.vaadin.client.ConnectorHierarchyChangeEvent.ConnectorHierarchyChangeHandler;
+import com.vaadin.client.HasComponentsConnector;
+import com.vaadin.client.ui.orderedlayout.Slot;
+import com.vaadin.client.ui.orderedlayout.VAbstractOrderedLayout;
+
+/**
+ * A snapshot of the slot positions of an ordered layout used for hit testing
+ * while dragging, so that the positions do not need to be read from the DOM
+ * on every mouse move.
+ * <p>
+ * The positions are measured lazily and measured again after something is
+ * scrolled, the window is resized or the children of the layout have
+ * changed. All positions are relative to the browser viewport like the client
+ * coordinates of events.
+ */
+public class SlotGeometry {
+
+    // Changed whenever the measured positions of all layouts may have become
+    // outdated
+    private static int generation;
+
+    private static boolean listening;
+
+    private final VAbstractOrderedLayout layout;
+
+    private final boolean vertical;
+
+    // The generation the positions were measured in
+    private int measuredGeneration = -1;
+
+    // Slots in layout order and their bounds along and across the layout
+    private final List<Slot> slots = new ArrayList<Slot>();
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private int[] crossStarts = new int[0];
+    private int[] crossEnds = new int[0];
+
+    // Index of each measured slot
+    private final Map<Widget, Integer> indexes = new HashMap<Widget, Integer>();
+
+    private int layoutStart;
+    private int layoutEnd;
+
+    /**
+     * Creates a snapshot of the slots of a layout
+     *
+     * @param layout
+     *            The layout which slots are measured
+     * @param connector
+     *            The connector of the layout, the slots are measured again
+     *            when its children change
+     */
+    public SlotGeometry(VAbstractOrderedLayout layout,
+            HasComponentsConnector connector) {
+        this.layout = layout;
+        this.vertical = layout.vertical;
+        listen();
+        connector.addConnectorHierarchyChangeHandler(
+                new ConnectorHierarchyChangeHandler() {
+                    @Override
+                    public void onConnectorHierarchyChange(
+                            ConnectorHierarchyChangeEvent event) {
+                        invalidate();
+                    }
+                });
+    }
+
+    /**
+     * Forgets the snapshot. The slots are measured again on the next lookup.
+     */
+    public void invalidate() {
+        measuredGeneration = -1;
+    }
+
+    /**
+     * Has the snapshot been measured and not been invalidated since
+     */
+    public boolean isValid() {
+        return measuredGeneration == generation;
+    }
+
+    /**
+     * Returns the position where a slot or the layout itself starts along
+     * the layout, i.e. the top of a slot in a vertical layout
+     *
+     * @param w
+     *            A slot of the layout or the layout itself
+     * @return The start position or null if the widget is not measured
+     */
+    public Integer getStart(Widget w) {
+        ensureValid();
+        if (w == layout) {
+            return layoutStart;
+        }
+        Integer index = indexes.get(w);
+        return index == null ? null : starts[index];
+    }
+
+    /**
+     * Returns the size of a slot or the layout itself along the layout, i.e.
+     * the height of a slot in a vertical layout
+     *
+     * @param w
+     *            A slot of the layout or the layout itself
+     * @return The size or null if the widget is not measured
+     */
+    public Integer getSize(Widget w) {
+        ensureValid();
+        if (w == layout) {
+            return layoutEnd - layoutStart;
+        }
+        Integer index = indexes.get(w);
+        return index == null ? null : ends[index] - starts[index];
+    }
+
+    /**
+     * Finds the slot under a point
+     *
+     * @param clientX
+     *            The client x-coordinate of the point
+     * @param clientY
+     *            The client y-coordinate of the point
+     * @return The slot under the point or null if the point is not over a
+     *         slot
+     */
+    public Slot findSlot(int clientX, int clientY) {
+        ensureValid();
+        int index = findSlotBefore(vertical ? clientY : clientX);
+        if (index >= 0 && (vertical ? clientY : clientX) < ends[index]
+                && crosses(index, vertical ? clientX : clientY)) {
+            return slots.get(index);
+        }
+        return null;
+    }
+
+    /**
+     * Finds the slot nearest to a point in the spacing between slots. Gives
+     * the same result as probing the elements around the point pixel by pixel
+     * along the layout, preferring the slot after the point when both are
+     * equally near.
+     *
+     * @param clientX
+     *            The client x-coordinate of the point
+     * @param clientY
+     *            The client y-coordinate of the point
+     * @param maxDistance
+     *            The maximum distance to the slot in pixels
+     * @return The nearest slot or null if there is no slot near the point
+     */
+    public Slot findNearestSlot(int clientX, int clientY, int maxDistance) {
+        ensureValid();
+
+        int position = vertical ? clientY : clientX;
+        int cross = vertical ? clientX : clientY;
+
+        int before = findSlotBefore(position);
+        int after = before + 1;
+
+        int distanceAfter = Integer.MAX_VALUE;
+        if (after < starts.length && crosses(after, cross)) {
+            distanceAfter = starts[after] - position;
+        }
+
+        int distanceBefore = Integer.MAX_VALUE;
+        if (before >= 0 && crosses(before, cross)) {
+            // The last pixel of the slot is at end - 1
+            distanceBefore = Math.max(1, position - ends[before] + 1);
+        }
+
+        if (distanceAfter <= distanceBefore && distanceAfter <= maxDistance) {
+            return slots.get(after);
+        }
+        if (distanceBefore <= maxDistance) {
+            return slots.get(before);
+        }
+        return null;
+    }
+
+    /*
+     * Binary search for the index of the last slot starting at or before the
+     * position, -1 if there is none
+     */
+    private int findSlotBefore(int position) {
+        int low = 0;
+        int high = starts.length - 1;
+        int before = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= position) {
+                before = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return before;
+    }
+
+    private boolean crosses(int index, int cross) {
+        return crossStarts[index] <= cross && cross < crossEnds[index];
+    }
+
+    private void ensureValid() {
+        if (!isValid()) {
+            measure();
+            measuredGeneration = generation;
+        }
+    }
+
+    /*
+     * Reads all positions at once so the browser lays out the page at most
+     * once per snapshot
+     */
+    private void measure() {
+        slots.clear();
+        indexes.clear();
+        for (Widget w : layout) {
+            if (w instanceof Slot) {
+                indexes.put(w, slots.size());
+                slots.add((Slot) w);
+            }
+        }
+
+        int count = slots.size();
+        starts = new int[count];
+        ends = new int[count];
+        crossStarts = new int[count];
+        crossEnds = new int[count];
+
+        int scrollTop = Window.getScrollTop();
+        int scrollLeft = Window.getScrollLeft();
+        for (int i = 0; i < count; i++) {
+            Element e = slots.get(i).getElement();
+            int top = e.getAbsoluteTop() - scrollTop;
+            int left = e.getAbsoluteLeft() - scrollLeft;
+            int bottom = top + e.getOffsetHeight();
+            int right = left + e.getOffsetWidth();
+            starts[i] = vertical ? top : left;
+            ends[i] = vertical ? bottom : right;
+            crossStarts[i] = vertical ? left : top;
+            crossEnds[i] = vertical ? right : bottom;
+        }
+
+        Element e = layout.getElement();
+        if (vertical) {
+            layoutStart = e.getAbsoluteTop() - scrollTop;
+            layoutEnd = layoutStart + e.getOffsetHeight();
+        } else {
+            layoutStart = e.getAbsoluteLeft() - scrollLeft;
+            layoutEnd = layoutStart + e.getOffsetWidth();
+        }
+    }
+
+    private static void invalidateAll() {
+        generation++;
+    }
+
+    /**
+     * Returns a number which changes whenever measured positions may have
+     * become outdated. Positions measured in an earlier generation should be
+     * measured again.
+     *
+     * @return The current generation
+     * @see #listen()
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Starts a new generation when something is scrolled or the window is
+     * resized. Changes inside a layout are not tracked here, they only
+     * outdate the positions of that layout.
+     */
+    public static void listen() {
+        if (!listening) {
+            listening = true;
+            Window.addResizeHandler(new ResizeHandler() {
+                @Override
+                public void onResize(ResizeEvent event) {
+                    invalidateAll();
+                }
+            });
+            addScrollListener();
+        }
+    }
+
+    /*
+     * Scroll events do not bubble so they are captured from the document to
+     * also notice scrolling inside panels
+     */
+    private static native void addScrollListener()
+    /*-{
+        $doc.addEventListener('scroll', $entry(function() {
+            @fi.jasoft.dragdroplayouts.client.ui.util.SlotGeometry::invalidateAll()();
+        }), true);
+    }-*/;
+}
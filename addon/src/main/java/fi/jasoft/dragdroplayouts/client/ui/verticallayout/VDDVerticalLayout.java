@@ -13,7 +13,6 @@
  */
 package fi.jasoft.dragdroplayouts.client.ui.verticallayout;
 
-import com.google.gwt.user.client.ui.UIObject;
 import com.google.gwt.user.client.ui.Widget;
 import com.google.gwt.user.client.ui.WidgetCollection;
 import com.vaadin.client.ComponentConnector;
@@ -30,7 +29,9 @@ import fi.jasoft.dragdroplayouts.client.VGrabFilter;
 import fi.jasoft.dragdroplayouts.client.ui.*;
 import fi.jasoft.dragdroplayouts.client.ui.VLayoutDragDropMouseHandler.DragStartListener;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.*;
+import fi.jasoft.dragdroplayouts.client.ui.util.EmphasisStyles;
 import fi.jasoft.dragdroplayouts.client.ui.util.IframeCoverUtility;
+import fi.jasoft.dragdroplayouts.client.ui.util.SlotGeometry;
 
 /**
  * Client side implementation for {@link DDVerticalLayout}
@@ -43,12 +44,15 @@ public class VDDVerticalLayout extends VVerticalLayout implements VHasDragMode,
         VHasDragFilter, VHasIframeShims, VHasDragImageReferenceSupport,
         VHasGrabFilter, VHasDragCaptionProvider {
 
-    private Widget currentlyEmphasised;
-
     public static final String OVER = "v-ddorderedlayout-over";
 
     public static final String OVER_SPACED = OVER + "-spaced";
 
+    private static final String[] OVER_LOCATIONS = EmphasisStyles
+            .getLocationStyleNames(OVER, VerticalDropLocation.values());
+
+    private final EmphasisStyles emphasisStyles = new EmphasisStyles();
+
     private VDDVerticalLayoutDropHandler dropHandler;
 
     private VDragFilter dragFilter;
@@ -104,27 +108,7 @@ public class VDDVerticalLayout extends VVerticalLayout implements VHasDragMode,
      * Removes any applies drag and drop style applied by emphasis()
      */
     protected void deEmphasis() {
-        if (currentlyEmphasised != null) {
-            // Universal over style
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER,
-                    false);
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER_SPACED,
-                    false);
-
-            // Vertical styles
-            UIObject.setStyleName(currentlyEmphasised.getElement(),
-                    OVER + "-"
-                            + VerticalDropLocation.TOP.toString().toLowerCase(),
-                    false);
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER + "-"
-                    + VerticalDropLocation.MIDDLE.toString().toLowerCase(),
-                    false);
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER + "-"
-                    + VerticalDropLocation.BOTTOM.toString().toLowerCase(),
-                    false);
-
-            currentlyEmphasised = null;
-        }
+        emphasisStyles.clear();
     }
 
     /**
@@ -140,9 +124,20 @@ public class VDDVerticalLayout extends VVerticalLayout implements VHasDragMode,
      */
     protected VerticalDropLocation getVerticalDropLocation(Widget container,
             VDragEvent event) {
+        int clientY = Util.getTouchOrMouseClientY(event.getCurrentGwtEvent());
+        SlotGeometry geometry = dropHandler != null
+                ? dropHandler.getSlotGeometry() : null;
+        if (geometry != null) {
+            // Use the measured position if the container is a slot
+            Integer top = geometry.getStart(container);
+            if (top != null) {
+                return VDragDropUtil.getVerticalDropLocation(top,
+                        geometry.getSize(container), clientY,
+                        cellTopBottomDropRatio);
+            }
+        }
         return VDragDropUtil.getVerticalDropLocation(container.getElement(),
-                Util.getTouchOrMouseClientY(event.getCurrentGwtEvent()),
-                cellTopBottomDropRatio);
+                clientY, cellTopBottomDropRatio);
     }
 
     /**
@@ -198,30 +193,27 @@ public class VDDVerticalLayout extends VVerticalLayout implements VHasDragMode,
      */
     protected void emphasis(Widget container, VDragEvent event) {
 
-        // Remove emphasis from previous hovers
-        deEmphasis();
-
         // validate container
         if (container == null
                 || !getElement().isOrHasChild(container.getElement())) {
+            // Remove emphasis from previous hovers
+            deEmphasis();
             return;
         }
 
-        currentlyEmphasised = container;
-
         VerticalDropLocation location = null;
 
         // Add drop location specific style
-        if (currentlyEmphasised != this) {
-            location = getVerticalDropLocation(currentlyEmphasised, event);
+        if (container != this) {
+            location = getVerticalDropLocation(container, event);
 
         } else {
             location = VerticalDropLocation.MIDDLE;
         }
 
-        UIObject.setStyleName(currentlyEmphasised.getElement(), OVER, true);
-        UIObject.setStyleName(currentlyEmphasised.getElement(),
-                OVER + "-" + location.toString().toLowerCase(), true);
+        // Only changes the DOM if the container or location has changed
+        emphasisStyles.emphasis(container.getElement(), OVER,
+                OVER_LOCATIONS[location.ordinal()]);
     }
 
     /**
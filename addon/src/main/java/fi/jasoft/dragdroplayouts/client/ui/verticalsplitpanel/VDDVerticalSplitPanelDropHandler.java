@@ -35,6 +35,7 @@ public class VDDVerticalSplitPanelDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
 
         // Un-emphasis any selections
         getLayout().deEmphasis();
@@ -46,6 +47,9 @@ public class VDDVerticalSplitPanelDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         getLayout().deEmphasis();
 
@@ -80,6 +84,7 @@ public class VDDVerticalSplitPanelDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().deEmphasis();
         getLayout().postLeaveHook(drag);
     }
@@ -38,6 +38,9 @@ import fi.jasoft.dragdroplayouts.events.VerticalLocationIs;
 public class DefaultAccordionDropHandler
         extends AbstractDefaultLayoutDropHandler {
 
+    private static final AcceptCriterion ACCEPT_CRITERION =
+            new Not(VerticalLocationIs.MIDDLE);
+
     /**
      * Called when tabs are being rearranged
      * 
@@ -139,7 +142,7 @@ public class DefaultAccordionDropHandler
 
     @Override
     public AcceptCriterion getAcceptCriterion() {
-        return new Not(VerticalLocationIs.MIDDLE);
+        return ACCEPT_CRITERION;
     }
 
     @Override
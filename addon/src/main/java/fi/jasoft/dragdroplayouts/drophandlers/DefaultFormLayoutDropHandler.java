@@ -40,6 +40,10 @@ import fi.jasoft.dragdroplayouts.events.VerticalLocationIs;
 public class DefaultFormLayoutDropHandler
         extends AbstractDefaultLayoutDropHandler {
 
+    private static final AcceptCriterion ACCEPT_CRITERION = new Or(
+            new TargetDetailIs(Constants.DROP_DETAIL_TO, "-1"),
+            VerticalLocationIs.TOP, VerticalLocationIs.BOTTOM);
+
     private Alignment dropAlignment;
 
     /**
@@ -201,10 +205,7 @@ public class DefaultFormLayoutDropHandler
 
     @Override
     public AcceptCriterion getAcceptCriterion() {
-        TargetDetailIs isOverEmptyLayout = new TargetDetailIs(
-                Constants.DROP_DETAIL_TO, "-1");
-        return new Or(isOverEmptyLayout, VerticalLocationIs.TOP,
-                VerticalLocationIs.BOTTOM);
+        return ACCEPT_CRITERION;
     }
 
     @Override
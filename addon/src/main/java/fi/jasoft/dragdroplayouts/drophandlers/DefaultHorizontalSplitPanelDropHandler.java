@@ -37,10 +37,13 @@ import fi.jasoft.dragdroplayouts.events.LayoutBoundTransferable;
 public class DefaultHorizontalSplitPanelDropHandler
         extends AbstractDefaultLayoutDropHandler {
 
+    private static final AcceptCriterion ACCEPT_CRITERION =
+            new Not(HorizontalLocationIs.CENTER);
+
     @Override
     public AcceptCriterion getAcceptCriterion() {
         // Only allow dropping in slots, not on the center bar
-        return new Not(HorizontalLocationIs.CENTER);
+        return ACCEPT_CRITERION;
     }
 
     @Override
@@ -38,10 +38,13 @@ import fi.jasoft.dragdroplayouts.events.LayoutBoundTransferable;
 public class DefaultTabSheetDropHandler
         extends AbstractDefaultLayoutDropHandler {
 
+    private static final AcceptCriterion ACCEPT_CRITERION =
+            new Not(HorizontalLocationIs.CENTER);
+
     @Override
     public AcceptCriterion getAcceptCriterion() {
         // Only allow drops between tabs
-        return new Not(HorizontalLocationIs.CENTER);
+        return ACCEPT_CRITERION;
     }
 
     @Override
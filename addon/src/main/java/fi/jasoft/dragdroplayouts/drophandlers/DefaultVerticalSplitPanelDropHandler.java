@@ -37,10 +37,13 @@ import fi.jasoft.dragdroplayouts.events.VerticalLocationIs;
 public class DefaultVerticalSplitPanelDropHandler
         extends AbstractDefaultLayoutDropHandler {
 
+    private static final AcceptCriterion ACCEPT_CRITERION =
+            new Not(VerticalLocationIs.MIDDLE);
+
     @Override
     public AcceptCriterion getAcceptCriterion() {
         // Only allow dropping in slots, not on the center bar
-        return new Not(VerticalLocationIs.MIDDLE);
+        return ACCEPT_CRITERION;
     }
 
     @Override
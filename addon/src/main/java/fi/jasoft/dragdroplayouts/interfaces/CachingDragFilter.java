@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.interfaces;
+
+import com.vaadin.ui.Component;
+
+/**
+ * A drag filter which remembers the result of another, expensive, drag filter
+ * for each component.
+ * <p>
+ * Results are remembered until they are invalidated with
+ * {@link #invalidate(Component)} or {@link #invalidateAll()}, or until the
+ * component is detached. Use it by wrapping the filter of a layout:
+ * 
+ * <pre>
+ * layout.setDragFilter(new CachingDragFilter(filter));
+ * </pre>
+ */
+@SuppressWarnings("serial")
+public class CachingDragFilter extends CachingFilter implements DragFilter {
+
+    private final DragFilter filter;
+
+    /**
+     * Constructor
+     * 
+     * @param filter
+     *            The drag filter which results should be remembered
+     */
+    public CachingDragFilter(DragFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        this.filter = filter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDraggable(Component component) {
+        return getResult(component);
+    }
+
+    @Override
+    protected boolean evaluate(Component component) {
+        return filter.isDraggable(component);
+    }
+
+    /**
+     * Returns the wrapped drag filter
+     */
+    public DragFilter getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.interfaces;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vaadin.server.ClientConnector.DetachEvent;
+import com.vaadin.server.ClientConnector.DetachListener;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.Component;
+
+/**
+ * Base class for filters which remember their result for each component
+ * until the component is invalidated or detached
+ */
+@SuppressWarnings("serial")
+abstract class CachingFilter implements Serializable {
+
+    private final Map<Component, Boolean> results = new HashMap<>();
+
+    private final Map<Component, Registration> detachRegistrations = new HashMap<>();
+
+    private final DetachListener detachListener = new DetachListener() {
+        @Override
+        public void detach(DetachEvent event) {
+            invalidate((Component) event.getConnector());
+        }
+    };
+
+    /**
+     * Evaluates the wrapped filter for a component
+     * 
+     * @param component
+     *            The component to evaluate
+     * @return the result of the wrapped filter
+     */
+    protected abstract boolean evaluate(Component component);
+
+    /**
+     * Returns the remembered result for a component, evaluating the wrapped
+     * filter if there is no result yet
+     * 
+     * @param component
+     *            The component to evaluate
+     * @return the result of the wrapped filter
+     */
+    protected boolean getResult(Component component) {
+        Boolean result = results.get(component);
+        if (result == null) {
+            result = evaluate(component);
+            results.put(component, result);
+            detachRegistrations.put(component,
+                    component.addDetachListener(detachListener));
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the result of a component. The wrapped filter is evaluated
+     * again the next time the component is filtered.
+     * <p>
+     * The owning layout needs to be marked as dirty for the change to be sent
+     * to the client.
+     * 
+     * @param component
+     *            The component which result should be forgotten
+     */
+    public void invalidate(Component component) {
+        if (results.remove(component) != null) {
+            detachRegistrations.remove(component).remove();
+        }
+    }
+
+    /**
+     * Forgets the results of all components.
+     * <p>
+     * The owning layout needs to be marked as dirty for the change to be sent
+     * to the client.
+     */
+    public void invalidateAll() {
+        for (Registration registration : detachRegistrations.values()) {
+            registration.remove();
+        }
+        results.clear();
+        detachRegistrations.clear();
+    }
+
+    /**
+     * Returns the number of components which results are remembered
+     */
+    public int size() {
+        return results.size();
+    }
+}
@@ -23,6 +23,11 @@ public interface DragGrabFilterSupport {
     DragGrabFilter getDragGrabFilter();
 
     /**
+     * Results of the filter are remembered until the component hierarchy
+     * under a child changes, a different filter is set or the layout is
+     * marked as dirty. Call {@code markAsDirty()} on the layout to evaluate
+     * a filter again whose result depends on the state of the components.
+     *
      * @param dragGrabFilter drag grab filter
      */
     void setDragGrabFilter(DragGrabFilter dragGrabFilter);
@@ -19,4 +19,38 @@ public interface DragImageReferenceSupport {
      * @return the image provider
      */
     DragImageProvider getDragImageProvider();
+
+    /**
+     * Resolve drag images only when the user starts dragging a component
+     * instead of resolving the drag images of all components on every change
+     * of the layout. The client requests the drag image from the server when
+     * a drag starts and caches the most recent answers.
+     * <p>
+     * Until the server has answered, the first drag of a component uses the
+     * default drag image.
+     * <p>
+     * The default implementation does not support lazy drag images.
+     * 
+     * @param lazy
+     *            true to resolve drag images lazily, false to resolve them
+     *            eagerly (default)
+     * @throws UnsupportedOperationException
+     *             if lazy drag images are not supported
+     */
+    default void setLazyDragImages(boolean lazy) {
+        if (lazy) {
+            throw new UnsupportedOperationException(
+                    "Lazy drag images are not supported by "
+                            + getClass().getName());
+        }
+    }
+
+    /**
+     * Are drag images resolved lazily
+     * 
+     * @return true if drag images are resolved lazily
+     */
+    default boolean isLazyDragImages() {
+        return false;
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 John Ahlroos
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts.interfaces;
+
+import fi.jasoft.dragdroplayouts.client.ui.DragProxyMode;
+import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutState;
+
+/**
+ * Interface for layouts which can configure the drag proxy, i.e. what is
+ * shown next to the pointer while a component is dragged
+ * 
+ * @author John Ahlroos / www.jasoft.fi
+ */
+public interface DragProxySupport {
+
+    /**
+     * The default maximum number of DOM nodes in a
+     * {@link DragProxyMode#LIMITED_CLONE} drag proxy
+     */
+    int DEFAULT_DRAG_PROXY_NODE_LIMIT = DDLayoutState.DEFAULT_DRAG_PROXY_NODE_LIMIT;
+
+    /**
+     * Sets how the dragged component is shown while dragging. Copying large
+     * components, like panels containing grids, can make starting a drag
+     * slow.
+     * 
+     * @param mode
+     *            The drag proxy mode, by default {@link DragProxyMode#CLONE}
+     *            is used
+     */
+    void setDragProxyMode(DragProxyMode mode);
+
+    /**
+     * Returns how the dragged component is shown while dragging
+     * 
+     * @return The drag proxy mode
+     */
+    DragProxyMode getDragProxyMode();
+
+    /**
+     * Sets the maximum number of DOM nodes copied when the drag proxy mode is
+     * {@link DragProxyMode#LIMITED_CLONE}
+     * 
+     * @param limit
+     *            The maximum number of nodes, by default
+     *            {@link #DEFAULT_DRAG_PROXY_NODE_LIMIT}
+     */
+    void setDragProxyNodeLimit(int limit);
+
+    /**
+     * Returns the maximum number of DOM nodes copied when the drag proxy mode
+     * is {@link DragProxyMode#LIMITED_CLONE}
+     * 
+     * @return The maximum number of nodes
+     */
+    int getDragProxyNodeLimit();
+
+    /**
+     * Moves the drag image with a CSS transform on its own compositing layer
+     * instead of changing its position. This avoids laying out the page on
+     * every mouse move, which can considerably raise the frame rate on slow
+     * clients.
+     * 
+     * @param transform
+     *            true to move the drag image with a transform, false to move
+     *            it by its position (default)
+     */
+    void setTransformDragImage(boolean transform);
+
+    /**
+     * Is the drag image moved with a CSS transform
+     * 
+     * @return true if the drag image is moved with a transform
+     */
+    boolean isTransformDragImage();
+}
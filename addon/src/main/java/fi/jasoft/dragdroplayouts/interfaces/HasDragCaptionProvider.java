@@ -19,4 +19,37 @@ package fi.jasoft.dragdroplayouts.interfaces;
 public interface HasDragCaptionProvider {
     void setDragCaptionProvider(DragCaptionProvider provider);
     DragCaptionProvider getDragCaptionProvider();
+
+    /**
+     * Resolve drag captions only when the user starts dragging a component
+     * instead of resolving the captions of all components on every change of
+     * the layout. The client requests the caption from the server when a drag
+     * starts and the caption is cached until the layout is marked as dirty.
+     * <br>
+     * Lazy drag captions are shown after a server round trip, so the first
+     * drag of a component shows the caption only once the server has
+     * answered.
+     * <br>
+     * The default implementation does not support lazy drag captions.
+     *
+     * @param lazy
+     *            true to resolve drag captions lazily, false to resolve them
+     *            eagerly (default)
+     * @throws UnsupportedOperationException
+     *             if lazy drag captions are not supported
+     */
+    default void setLazyDragCaptions(boolean lazy) {
+        if (lazy) {
+            throw new UnsupportedOperationException(
+                    "Lazy drag captions are not supported by "
+                            + getClass().getName());
+        }
+    }
+
+    /**
+     * @return true if drag captions are resolved lazily
+     */
+    default boolean isLazyDragCaptions() {
+        return false;
+    }
 }
\ No newline at end of file
@@ -41,4 +41,35 @@ public interface ShimSupport {
      */
     boolean isShimmed();
 
+    /**
+     * True to shield all iframes of the page only while something is being
+     * dragged instead of permanently covering each iframe of the layout
+     * (defaults to false). The iframes are then not moved in the DOM, which
+     * would reload them, but a drag cannot be started by pressing the mouse
+     * inside an iframe. Only has an effect when the layout is shimmed.
+     * <p>
+     * The default implementation does not support drag scoped shims.
+     * 
+     * @param dragScoped
+     *            Are the iframes shielded only while dragging
+     * @throws UnsupportedOperationException
+     *             if drag scoped shims are not supported
+     */
+    default void setDragScopedShim(boolean dragScoped) {
+        if (dragScoped) {
+            throw new UnsupportedOperationException(
+                    "Drag scoped shims are not supported by "
+                            + getClass().getName());
+        }
+    }
+
+    /**
+     * Are the iframes shielded only while dragging
+     * 
+     * @return true if the iframes are shielded only while dragging
+     */
+    default boolean isDragScopedShim() {
+        return false;
+    }
+
 }
@@ -13,7 +13,6 @@
  */
 package fi.jasoft.dragdroplayouts.v7.client.ui.horizontallayout;
 
-import com.google.gwt.user.client.ui.UIObject;
 import com.google.gwt.user.client.ui.Widget;
 import com.google.gwt.user.client.ui.WidgetCollection;
 import com.vaadin.client.ComponentConnector;
@@ -38,7 +37,9 @@ import fi.jasoft.dragdroplayouts.client.ui.interfaces.VHasDragFilter;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.VHasDragImageReferenceSupport;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.VHasDragMode;
 import fi.jasoft.dragdroplayouts.client.ui.interfaces.VHasIframeShims;
+import fi.jasoft.dragdroplayouts.client.ui.util.EmphasisStyles;
 import fi.jasoft.dragdroplayouts.client.ui.util.IframeCoverUtility;
+import fi.jasoft.dragdroplayouts.client.ui.util.SlotGeometry;
 
 /**
  * Client side implementation for {@link DDHorizontalLayout}
@@ -54,7 +55,10 @@ public class VDDHorizontalLayout extends VHorizontalLayout
     public static final String OVER = "v-ddorderedlayout-over";
     public static final String OVER_SPACED = OVER + "-spaced";
 
-    private Widget currentlyEmphasised;
+    private static final String[] OVER_LOCATIONS = EmphasisStyles
+            .getLocationStyleNames(OVER, HorizontalDropLocation.values());
+
+    private final EmphasisStyles emphasisStyles = new EmphasisStyles();
 
     private VDDHorizontalLayoutDropHandler dropHandler;
 
@@ -97,26 +101,7 @@ public class VDDHorizontalLayout extends VHorizontalLayout
      * Removes any applies drag and drop style applied by emphasis()
      */
     protected void deEmphasis() {
-        if (currentlyEmphasised != null) {
-            // Universal over style
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER,
-                    false);
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER_SPACED,
-                    false);
-
-            // Horizontal styles
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER + "-"
-                    + HorizontalDropLocation.LEFT.toString().toLowerCase(),
-                    false);
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER + "-"
-                    + HorizontalDropLocation.CENTER.toString().toLowerCase(),
-                    false);
-            UIObject.setStyleName(currentlyEmphasised.getElement(), OVER + "-"
-                    + HorizontalDropLocation.RIGHT.toString().toLowerCase(),
-                    false);
-
-            currentlyEmphasised = null;
-        }
+        emphasisStyles.clear();
     }
 
     /**
@@ -132,9 +117,20 @@ public class VDDHorizontalLayout extends VHorizontalLayout
      */
     protected HorizontalDropLocation getHorizontalDropLocation(Widget container,
             VDragEvent event) {
+        int clientX = Util.getTouchOrMouseClientX(event.getCurrentGwtEvent());
+        SlotGeometry geometry = dropHandler != null
+                ? dropHandler.getSlotGeometry() : null;
+        if (geometry != null) {
+            // Use the measured position if the container is a slot
+            Integer left = geometry.getStart(container);
+            if (left != null) {
+                return VDragDropUtil.getHorizontalDropLocation(left,
+                        geometry.getSize(container), clientX,
+                        cellLeftRightDropRatio);
+            }
+        }
         return VDragDropUtil.getHorizontalDropLocation(container.getElement(),
-                Util.getTouchOrMouseClientX(event.getCurrentGwtEvent()),
-                cellLeftRightDropRatio);
+                clientX, cellLeftRightDropRatio);
     }
 
     /**
@@ -235,30 +231,27 @@ public class VDDHorizontalLayout extends VHorizontalLayout
      */
     protected void emphasis(Widget container, VDragEvent event) {
 
-        // Remove emphasis from previous hovers
-        deEmphasis();
-
         // validate container
         if (container == null
                 || !getElement().isOrHasChild(container.getElement())) {
+            // Remove emphasis from previous hovers
+            deEmphasis();
             return;
         }
 
-        currentlyEmphasised = container;
-
         HorizontalDropLocation location = null;
 
         // Add drop location specific style
-        if (currentlyEmphasised != this) {
+        if (container != this) {
             location = getHorizontalDropLocation(container, event);
 
         } else {
             location = HorizontalDropLocation.CENTER;
         }
 
-        UIObject.setStyleName(currentlyEmphasised.getElement(), OVER, true);
-        UIObject.setStyleName(currentlyEmphasised.getElement(),
-                OVER + "-" + location.toString().toLowerCase(), true);
+        // Only changes the DOM if the container or location has changed
+        emphasisStyles.emphasis(container.getElement(), OVER,
+                OVER_LOCATIONS[location.ordinal()]);
     }
 
     /**
@@ -40,6 +40,7 @@ public class VDDHorizontalLayoutDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
 
         // Un-emphasis any selections
         getLayout().emphasis(null, null);
@@ -58,6 +59,11 @@ public class VDDHorizontalLayoutDropHandler
             // Most likely between components, use the closes one in that case
             slot = findSlotHorizontally(12, event);
         } else {
+            slot = findSlotAtPointer(event);
+            if (slot != null) {
+                return slot;
+            }
+
             slot = WidgetUtil.findWidget(e, Slot.class);
             if (slot == null) {
                 return null;
@@ -79,6 +85,9 @@ public class VDDHorizontalLayoutDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         // Remove any emphasis
         getLayout().emphasis(null, null);
@@ -122,6 +131,7 @@ public class VDDHorizontalLayoutDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().deEmphasis();
         getLayout().postLeaveHook(drag);
     }
@@ -40,6 +40,7 @@ public class VDDVerticalLayoutDropHandler
 
     @Override
     public boolean drop(VDragEvent drag) {
+        cancelDragOver();
 
         // Un-emphasis any selections
         getLayout().emphasis(null, null);
@@ -58,6 +59,11 @@ public class VDDVerticalLayoutDropHandler
             // Most likely between components, use the closest one in that case
             slot = findSlotVertically(12, event);
         } else {
+            slot = findSlotAtPointer(event);
+            if (slot != null) {
+                return slot;
+            }
+
             slot = WidgetUtil.findWidget(e, Slot.class);
             if (slot == null) {
                 return null;
@@ -78,6 +84,9 @@ public class VDDVerticalLayoutDropHandler
 
     @Override
     public void dragOver(VDragEvent drag) {
+        if (deferDragOver(drag)) {
+            return;
+        }
 
         // Remove any emphasis
         getLayout().emphasis(null, null);
@@ -121,6 +130,7 @@ public class VDDVerticalLayoutDropHandler
 
     @Override
     public void dragLeave(VDragEvent drag) {
+        cancelDragOver();
         getLayout().emphasis(null, drag);
 
         getLayout().postLeaveHook(drag);
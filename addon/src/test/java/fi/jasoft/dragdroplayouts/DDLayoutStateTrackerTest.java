@@ -0,0 +1,534 @@
+/*
+ * Copyright 2015 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package fi.jasoft.dragdroplayouts;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.vaadin.event.dd.DragAndDropEvent;
+import com.vaadin.event.dd.DropHandler;
+import com.vaadin.event.dd.acceptcriteria.AcceptCriterion;
+import com.vaadin.server.EncodeResult;
+import com.vaadin.server.JsonCodec;
+import com.vaadin.server.PaintException;
+import com.vaadin.server.PaintTarget;
+import com.vaadin.server.ThemeResource;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.Connector;
+import com.vaadin.shared.communication.URLReference;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.HasComponents.ComponentAttachEvent;
+import com.vaadin.ui.ConnectorTracker;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+
+import fi.jasoft.dragdroplayouts.client.ui.interfaces.DDLayoutState;
+import fi.jasoft.dragdroplayouts.interfaces.DragCaptionProvider;
+import fi.jasoft.dragdroplayouts.interfaces.DragFilter;
+import fi.jasoft.dragdroplayouts.interfaces.DragGrabFilter;
+
+/**
+ * Tests that the drag and drop state is only recomputed when its inputs change
+ */
+public class DDLayoutStateTrackerTest extends TestCase {
+
+  private static final int CHILDREN = 100;
+
+  private static final int RESPONSES = 50;
+
+  /**
+   * Counts how many times the filter has been evaluated
+   */
+  @SuppressWarnings("serial")
+  private static class CountingDragFilter implements DragFilter {
+
+    private int invocations;
+
+    @Override
+    public boolean isDraggable(Component component) {
+      invocations++;
+      return true;
+    }
+  }
+
+  /**
+   * Resolves draggability from either of the state forms like the client does
+   */
+  private static boolean isDraggable(DDLayoutState state, Component c) {
+    if (state.draggableByDefault) {
+      return c.getParent() != null && !state.nonDraggable.contains(c);
+    }
+    return state.draggable.contains(c);
+  }
+
+  private static int countDraggable(DDVerticalLayout layout) {
+    int count = 0;
+    for (Component c : layout) {
+      if (isDraggable(layout.getState().ddState, c)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static DDVerticalLayout createLayout(DragFilter filter) {
+    DDVerticalLayout layout = new DDVerticalLayout();
+    for (int i = 0; i < CHILDREN; i++) {
+      layout.addComponent(new Button("Button " + i));
+    }
+    layout.setDragFilter(filter);
+    return layout;
+  }
+
+  /**
+   * Unchanged layouts should not recompute or replace their state
+   */
+  @Test
+  public void testUnchangedLayoutIsNotRecomputed() {
+    CountingDragFilter filter = new CountingDragFilter();
+    DDVerticalLayout layout = createLayout(filter);
+
+    layout.beforeClientResponse(true);
+    List<Connector> nonDraggable = layout.getState().ddState.nonDraggable;
+    assertEquals(CHILDREN, countDraggable(layout));
+
+    for (int i = 0; i < RESPONSES; i++) {
+      layout.beforeClientResponse(false);
+    }
+
+    // Only the initial response evaluated the filter
+    assertEquals(CHILDREN, filter.invocations);
+
+    // The state was not rebuilt so there is nothing to serialize or diff
+    assertSame(nonDraggable, layout.getState().ddState.nonDraggable);
+  }
+
+  /**
+   * Attaching and detaching children recomputes the state
+   */
+  @Test
+  public void testChildChangesRecomputeState() {
+    CountingDragFilter filter = new CountingDragFilter();
+    DDVerticalLayout layout = createLayout(filter);
+    layout.beforeClientResponse(true);
+
+    Button button = new Button("Added");
+    layout.addComponent(button);
+    layout.beforeClientResponse(false);
+    assertEquals(CHILDREN + 1, countDraggable(layout));
+    assertTrue(isDraggable(layout.getState().ddState, button));
+
+    layout.removeComponent(button);
+    layout.beforeClientResponse(false);
+    assertEquals(CHILDREN, countDraggable(layout));
+    assertFalse(isDraggable(layout.getState().ddState, button));
+  }
+
+  /**
+   * Changing the filter or explicitly marking the layout dirty recomputes
+   * the state
+   */
+  @Test
+  public void testFilterChangesRecomputeState() {
+    DDVerticalLayout layout = createLayout(DragFilter.ALL);
+    layout.beforeClientResponse(true);
+    assertEquals(CHILDREN, countDraggable(layout));
+
+    layout.setDragFilter(DragFilter.NONE);
+    layout.beforeClientResponse(false);
+    assertEquals(0, countDraggable(layout));
+
+    CountingDragFilter filter = new CountingDragFilter();
+    layout.setDragFilter(filter);
+    layout.beforeClientResponse(false);
+    assertEquals(CHILDREN, filter.invocations);
+
+    layout.markAsDirty();
+    layout.beforeClientResponse(false);
+    assertEquals(2 * CHILDREN, filter.invocations);
+  }
+
+  /**
+   * The smaller of the two draggable forms is sent to the client
+   */
+  @Test
+  public void testCompactDraggableForm() {
+    final Button notDraggable = new Button("Not draggable");
+    DDVerticalLayout layout = createLayout(new DragFilter() {
+      @Override
+      public boolean isDraggable(Component component) {
+        return component != notDraggable;
+      }
+    });
+    layout.addComponent(notDraggable);
+    layout.beforeClientResponse(true);
+
+    DDLayoutState state = layout.getState().ddState;
+    assertTrue(state.draggableByDefault);
+    assertTrue(state.draggable.isEmpty());
+    assertEquals(1, state.nonDraggable.size());
+    assertFalse(isDraggable(state, notDraggable));
+    assertEquals(CHILDREN, countDraggable(layout));
+
+    // Mostly non-draggable layouts keep using the list form
+    layout.setDragFilter(new DragFilter() {
+      @Override
+      public boolean isDraggable(Component component) {
+        return component == notDraggable;
+      }
+    });
+    layout.beforeClientResponse(false);
+    assertFalse(state.draggableByDefault);
+    assertEquals(1, state.draggable.size());
+    assertTrue(state.nonDraggable.isEmpty());
+    assertTrue(isDraggable(state, notDraggable));
+  }
+
+  @SuppressWarnings("serial")
+  private static UI createUI() {
+    VaadinSession session = new VaadinSession(null) {
+      @Override
+      public boolean hasLock() {
+        return true;
+      }
+    };
+    UI ui = new UI() {
+      @Override
+      protected void init(VaadinRequest request) {
+        // NOP
+      }
+    };
+    ui.setSession(session);
+    return ui;
+  }
+
+  /**
+   * Runs beforeClientResponse() like a response would and encodes the
+   * changes of the drag and drop state since the previous response
+   */
+  private static EncodeResult respond(DDVerticalLayout layout,
+      JsonValue previous) {
+    ConnectorTracker tracker = layout.getUI().getConnectorTracker();
+    tracker.setWritingResponse(true);
+    try {
+      layout.beforeClientResponse(previous == null);
+      return JsonCodec.encode(layout.getState().ddState, previous,
+          DDLayoutState.class, tracker);
+    } finally {
+      tracker.setWritingResponse(false);
+      tracker.markAllConnectorsClean();
+    }
+  }
+
+  /**
+   * Responses only send the parts of the drag and drop state which have
+   * changed since the previous response
+   */
+  @Test
+  public void testStateBytesPerResponse() {
+    DDVerticalLayout layout = createLayout(new DragFilter() {
+      @Override
+      public boolean isDraggable(Component component) {
+        return !(component instanceof Label);
+      }
+    });
+    createUI().setContent(layout);
+
+    EncodeResult response = respond(layout, null);
+    int initialBytes = response.getEncodedValue().toJson().length();
+    assertTrue(initialBytes > 0);
+
+    // Unchanged layouts send nothing
+    for (int i = 0; i < RESPONSES; i++) {
+      response = respond(layout, response.getEncodedValue());
+      assertEquals("{}", response.getDiff().toJson());
+    }
+
+    // Draggable children are not listed, so adding one sends nothing
+    layout.addComponent(new Button("Draggable"));
+    response = respond(layout, response.getEncodedValue());
+    assertEquals("{}", response.getDiff().toJson());
+
+    // A child which is not draggable only sends the changed list
+    layout.addComponent(new Label("Not draggable"));
+    response = respond(layout, response.getEncodedValue());
+    JsonObject diff = (JsonObject) response.getDiff();
+    assertEquals(1, diff.keys().length);
+    assertTrue(diff.hasKey("nonDraggable"));
+    assertTrue(diff.toJson().length() < initialBytes);
+  }
+
+  /**
+   * Drag caption icons keep their resource keys between responses and are
+   * released when no longer used
+   */
+  @Test
+  public void testDragIconKeysAreStable() {
+    DDVerticalLayout layout = createLayout(DragFilter.ALL);
+    layout.setDragCaptionProvider(new DragCaptionProvider() {
+      @Override
+      public DragCaption getDragCaption(Component component) {
+        return new DragCaption("Caption", new ThemeResource("icon.png"));
+      }
+    });
+    layout.beforeClientResponse(true);
+
+    DDLayoutState state = layout.getState().ddState;
+    String iconKey = state.dragCaptions.get(layout.getComponent(0)).iconKey;
+    for (Component c : layout) {
+      assertEquals(iconKey, state.dragCaptions.get(c).iconKey);
+    }
+    URLReference reference = layout.getState().resources.get(iconKey);
+    assertNotNull(reference);
+
+    layout.markAsDirty();
+    layout.beforeClientResponse(false);
+    assertEquals(iconKey,
+        state.dragCaptions.get(layout.getComponent(0)).iconKey);
+    assertSame(reference, layout.getState().resources.get(iconKey));
+
+    layout.setDragCaptionProvider(null);
+    layout.beforeClientResponse(false);
+    assertNull(layout.getState().resources.get(iconKey));
+  }
+
+  /**
+   * Recomputing the state without a tracker still registers the drag caption
+   * icons and removes the ones no longer used
+   */
+  @Test
+  public void testUntrackedRecomputeRegistersDragIcons() {
+    DDVerticalLayout layout = createLayout(DragFilter.ALL);
+    layout.setDragCaptionProvider(new DragCaptionProvider() {
+      @Override
+      public DragCaption getDragCaption(Component component) {
+        return new DragCaption("Caption", new ThemeResource("icon.png"));
+      }
+    });
+    DDUtil.onBeforeClientResponse(layout, layout.getState());
+
+    DDLayoutState state = layout.getState().ddState;
+    String iconKey = state.dragCaptions.get(layout.getComponent(0)).iconKey;
+    assertNotNull(iconKey);
+    assertNotNull(layout.getState().resources.get(iconKey));
+
+    layout.setDragCaptionProvider(null);
+    DDUtil.onBeforeClientResponse(layout, layout.getState());
+    assertTrue(state.dragCaptions.isEmpty());
+    assertNull(layout.getState().resources.get(iconKey));
+  }
+
+  /**
+   * Grab filter which counts its evaluations and does not allow grabbing
+   * labels, or buttons when they are disabled
+   */
+  @SuppressWarnings("serial")
+  private static class CountingGrabFilter implements DragGrabFilter {
+
+    private int invocations;
+
+    private boolean buttonsGrabbable = true;
+
+    @Override
+    public boolean canBeGrabbed(Component component) {
+      invocations++;
+      if (component instanceof Button) {
+        return buttonsGrabbable;
+      }
+      return !(component instanceof Label);
+    }
+  }
+
+  /**
+   * Only the nested subtrees which have changed are evaluated again by the
+   * grab filter, unless the layout is marked as dirty
+   */
+  @Test
+  public void testNestedSubtreesAreOnlyEvaluatedWhenChanged() {
+    final int depth = 20;
+    final int nodesPerChild = depth + 1;
+
+    DDVerticalLayout layout = new DDVerticalLayout();
+    List<VerticalLayout> deepest = new ArrayList<VerticalLayout>();
+    for (int i = 0; i < 10; i++) {
+      VerticalLayout parent = new VerticalLayout();
+      layout.addComponent(parent);
+      for (int d = 1; d < depth; d++) {
+        VerticalLayout nested = new VerticalLayout();
+        parent.addComponent(nested);
+        parent = nested;
+      }
+      parent.addComponent(new Button("Leaf " + i));
+      deepest.add(parent);
+    }
+
+    CountingGrabFilter filter = new CountingGrabFilter();
+    layout.setDragGrabFilter(filter);
+    layout.beforeClientResponse(true);
+    assertEquals(10 * nodesPerChild, filter.invocations);
+
+    // Responses without changes do not walk the subtrees again
+    for (int i = 0; i < RESPONSES; i++) {
+      layout.beforeClientResponse(false);
+    }
+    assertEquals(10 * nodesPerChild, filter.invocations);
+
+    // Changing a deeply nested container only walks its own subtree
+    Label label = new Label("Not grabbable");
+    deepest.get(3).addComponent(label);
+    layout.beforeClientResponse(false);
+    assertEquals(11 * nodesPerChild + 1, filter.invocations);
+    assertEquals(1, layout.getState().ddState.nonGrabbable.size());
+    assertTrue(layout.getState().ddState.nonGrabbable.contains(label));
+
+    deepest.get(3).removeComponent(label);
+    layout.beforeClientResponse(false);
+    assertEquals(12 * nodesPerChild + 1, filter.invocations);
+    assertTrue(layout.getState().ddState.nonGrabbable.isEmpty());
+
+    // A different filter evaluates everything again
+    CountingGrabFilter other = new CountingGrabFilter();
+    layout.setDragGrabFilter(other);
+    layout.beforeClientResponse(false);
+    assertEquals(10 * nodesPerChild, other.invocations);
+
+    // Marking the layout dirty refreshes a filter with changed rules
+    other.buttonsGrabbable = false;
+    layout.markAsDirty();
+    layout.beforeClientResponse(false);
+    assertEquals(20 * nodesPerChild, other.invocations);
+    assertEquals(10, layout.getState().ddState.nonGrabbable.size());
+
+    // Removing the filter stops listening to the subtrees
+    layout.setDragGrabFilter(null);
+    layout.beforeClientResponse(false);
+    for (VerticalLayout nested : deepest) {
+      assertTrue(nested.getListeners(ComponentAttachEvent.class).isEmpty());
+    }
+    assertTrue(layout.getState().ddState.nonGrabbable.isEmpty());
+  }
+
+  /**
+   * Accept criterion which counts how many times it has been painted
+   */
+  @SuppressWarnings("serial")
+  private static class CountingCriterion implements AcceptCriterion {
+
+    private int paints;
+
+    @Override
+    public boolean isClientSideVerifiable() {
+      return true;
+    }
+
+    @Override
+    public void paint(PaintTarget target) throws PaintException {
+      paints++;
+      target.startTag("-ac");
+      target.addAttribute("name", "counting");
+      target.endTag("-ac");
+    }
+
+    @Override
+    public void paintResponse(PaintTarget target) throws PaintException {
+      // NOP
+    }
+
+    @Override
+    public boolean accept(DragAndDropEvent dragEvent) {
+      return true;
+    }
+  }
+
+  /**
+   * Creates a paint target which records the names of the painted tags
+   */
+  private static PaintTarget createPaintTarget(final List<String> tags) {
+    return (PaintTarget) Proxy.newProxyInstance(
+        PaintTarget.class.getClassLoader(), new Class<?>[] { PaintTarget.class },
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("startTag")) {
+              tags.add((String) args[args.length - 1]);
+            }
+            return method.getReturnType() == boolean.class ? Boolean.FALSE
+                : null;
+          }
+        });
+  }
+
+  /**
+   * Repaints only paint the accept criterion when it has changed
+   */
+  @Test
+  public void testAcceptCriterionIsOnlyPaintedWhenChanged()
+      throws PaintException {
+    final CountingCriterion criterion = new CountingCriterion();
+    DDVerticalLayout layout = createLayout(DragFilter.ALL);
+    layout.setDropHandler(new DropHandler() {
+      @Override
+      public void drop(DragAndDropEvent event) {
+        // NOP
+      }
+
+      @Override
+      public AcceptCriterion getAcceptCriterion() {
+        return criterion;
+      }
+    });
+
+    List<String> tags = new ArrayList<String>();
+    PaintTarget target = createPaintTarget(tags);
+    layout.beforeClientResponse(true);
+    layout.paintContent(target);
+
+    for (int i = 0; i < RESPONSES; i++) {
+      layout.markAsDirty();
+      layout.beforeClientResponse(false);
+      layout.paintContent(target);
+    }
+
+    // Every repaint tells the client to keep its drop handler
+    assertEquals(RESPONSES + 1, tags.size());
+    assertEquals(1, criterion.paints);
+
+    // A new client does not know the criterion yet
+    layout.beforeClientResponse(true);
+    layout.paintContent(target);
+    assertEquals(2, criterion.paints);
+
+    // The client removes the drop handler of a disabled layout
+    layout.setEnabled(false);
+    layout.beforeClientResponse(false);
+    layout.paintContent(target);
+    layout.setEnabled(true);
+    layout.beforeClientResponse(false);
+    layout.paintContent(target);
+    assertEquals(3, criterion.paints);
+  }
+}
@@ -23,6 +23,11 @@ import junit.framework.TestCase;
 
 import org.junit.Test;
 
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
+
+import fi.jasoft.dragdroplayouts.DDVerticalLayout;
+import fi.jasoft.dragdroplayouts.interfaces.CachingDragFilter;
 import fi.jasoft.dragdroplayouts.interfaces.DragFilter;
 
 /**
@@ -43,6 +48,42 @@ public class DragFilterTest extends TestCase {
     assertSame(DragFilter.NONE, reserialize(DragFilter.NONE));
   }
 
+  /**
+   * Tests that the caching filter remembers results until invalidated or
+   * until the component is removed from the layout
+   */
+  @Test
+  public void testCachingFilter() {
+    final int[] invocations = new int[1];
+    CachingDragFilter filter = new CachingDragFilter(new DragFilter() {
+      @Override
+      public boolean isDraggable(Component component) {
+        invocations[0]++;
+        return true;
+      }
+    });
+
+    DDVerticalLayout layout = new DDVerticalLayout();
+    Button button = new Button();
+    layout.addComponent(button);
+    layout.setDragFilter(filter);
+
+    assertTrue(filter.isDraggable(button));
+    assertTrue(filter.isDraggable(button));
+    assertEquals(1, invocations[0]);
+
+    filter.invalidate(button);
+    assertTrue(filter.isDraggable(button));
+    assertEquals(2, invocations[0]);
+
+    filter.invalidateAll();
+    assertEquals(0, filter.size());
+
+    filter.isDraggable(button);
+    layout.removeComponent(button);
+    assertEquals(0, filter.size());
+  }
+
   /**
    * Helper for re-serializing a filter
    * 